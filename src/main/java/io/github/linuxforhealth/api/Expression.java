@@ -13,7 +13,10 @@ import java.util.Map;
 /**
  * Each expression defines how to extract the value for a field. The execute method defines the
  * extraction process.
- * 
+ *
+ * Expressions are loaded once with their templates and shared by all conversions, which can run
+ * concurrently. Implementations must be immutable once built and keep any state of an evaluation
+ * local to that evaluation.
  *
  * @author pbhallam
  */
@@ -6,6 +6,7 @@
 package io.github.linuxforhealth.api;
 
 import java.util.Map;
+import org.apache.commons.jexl3.JexlExpression;
 
 /**
  * Represents class that encapsulates how to extract information from a particular source.
@@ -45,6 +46,19 @@ public interface InputDataExtractor {
   EvaluationResult evaluateJexlExpression(String expression,
       Map<String, EvaluationResult> contextValues);
 
+  /**
+   * Evaluate JEXL Expression compiled when the template was loaded. By default the source text of
+   * the expression is evaluated.
+   * 
+   * @param expression - Compiled expression
+   * @param contextValues - Map of key value pair
+   * @return {@link EvaluationResult}
+   */
+  default EvaluationResult evaluateJexlExpression(JexlExpression expression,
+      Map<String, EvaluationResult> contextValues) {
+    return evaluateJexlExpression(expression.getSourceText(), contextValues);
+  }
+
 
   /**
    * Return the name /identifier of this resource Example: for ADT_A01 message, return the message
@@ -18,9 +18,11 @@ import org.apache.commons.configuration2.builder.FileBasedConfigurationBuilder;
 import org.apache.commons.configuration2.builder.fluent.Parameters;
 import org.apache.commons.configuration2.convert.DefaultListDelimiterHandler;
 import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.commons.configuration2.ex.ConversionException;
 import org.apache.commons.configuration2.io.ClasspathLocationStrategy;
 import org.apache.commons.configuration2.io.CombinedLocationStrategy;
 import org.apache.commons.configuration2.io.FileLocationStrategy;
+import org.apache.commons.lang3.EnumUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +36,16 @@ public class ConverterConfiguration {
   private static final String CONFIG_PROPERTIES = "config.properties";
   private static final String ADDITIONAL_CONCEPT_MAPS_FILE = "additional.conceptmap.file";
   private static final String ADDITIONAL_RESOURCES_LOCATION = "additional.resources.location";
+  private static final String MESSAGE_STRUCTURE_LOGGING = "message.structure.logging";
+  private static final String MESSAGE_STRUCTURE_SAMPLE_RATE = "message.structure.sample.rate";
+  private static final int DEFAULT_MESSAGE_STRUCTURE_SAMPLE_RATE = 100;
+  private static final String DEDUPLICATE_RESOURCES = "deduplicate.resources";
+  private static final String DEFAULT_DEDUPLICATE_RESOURCE = "Organization";
+  private static final String PARSING_SKIP_UNUSED_SEGMENTS = "parsing.skip.unused.segments";
+  private static final String PARSING_ER7_EXTRACTION = "parsing.er7.extraction";
+  private static final String TRANSFORM_PARALLEL_RESOURCES = "transform.parallel.resources";
+  private static final String JEXL_CACHE_SIZE = "jexl.cache.size";
+  private static final int DEFAULT_JEXL_CACHE_SIZE = 1000;
 
   private static ConverterConfiguration configuration;
 
@@ -43,6 +55,13 @@ public class ConverterConfiguration {
   private ZoneId zoneId;
   private String additionalConceptmapFile;
   private String additionalResourcesLocation;
+  private MessageStructureLogging messageStructureLogging;
+  private int messageStructureSampleRate;
+  private List<String> deduplicatedResources;
+  private boolean skipUnusedSegments;
+  private boolean er7Extraction;
+  private boolean parallelResources;
+  private int jexlCacheSize;
 
   private ConverterConfiguration() {
     try {
@@ -92,11 +111,46 @@ public class ConverterConfiguration {
       // get additional resources location
       additionalResourcesLocation = config.getString(ADDITIONAL_RESOURCES_LOCATION, null);
 
+      // get message structure logging mode, if not found or not recognized, default to OFF
+      messageStructureLogging = EnumUtils.getEnumIgnoreCase(MessageStructureLogging.class,
+          StringUtils.trim(config.getString(MESSAGE_STRUCTURE_LOGGING, null)));
+      if (messageStructureLogging == null) {
+        messageStructureLogging = MessageStructureLogging.OFF;
+      }
+      messageStructureSampleRate = Math.max(1,
+          getInt(config, MESSAGE_STRUCTURE_SAMPLE_RATE, DEFAULT_MESSAGE_STRUCTURE_SAMPLE_RATE));
+
+      // get resource types to deduplicate in bundles, if not found, default to Organization
+      List<Object> dedupValues = config.getList(DEDUPLICATE_RESOURCES, null);
+      if (dedupValues != null) {
+        deduplicatedResources = dedupValues.stream().filter(v -> v != null && StringUtils.isNotBlank(v.toString()))
+            .map(v -> v.toString().trim()).collect(Collectors.toList());
+      } else {
+        deduplicatedResources = new ArrayList<>(Arrays.asList(DEFAULT_DEDUPLICATE_RESOURCE));
+      }
+
+      skipUnusedSegments = config.getBoolean(PARSING_SKIP_UNUSED_SEGMENTS, false);
+      er7Extraction = config.getBoolean(PARSING_ER7_EXTRACTION, false);
+      parallelResources = config.getBoolean(TRANSFORM_PARALLEL_RESOURCES, false);
+      jexlCacheSize = Math.max(1, getInt(config, JEXL_CACHE_SIZE, DEFAULT_JEXL_CACHE_SIZE));
+
     } catch (ConfigurationException e) {
       throw new IllegalStateException("Cannot read configuration for resource location", e);
     }
   }
 
+  // if the value is not an integer, default to defaultValue
+  private static int getInt(Configuration config, String key, int defaultValue) {
+    try {
+      return config.getInt(key, defaultValue);
+    } catch (ConversionException e) {
+      LOGGER.warn("Cannot read {} value {} as an integer, using {}", key, config.getString(key, null),
+          defaultValue);
+      LOGGER.debug("Cannot read {} as an integer", key, e);
+      return defaultValue;
+    }
+  }
+
   private void getZoneId(String zoneText) {
     try {
       zoneId = ZoneId.of(zoneText);
@@ -146,4 +200,32 @@ public class ConverterConfiguration {
     return additionalResourcesLocation;
   }
 
+  public MessageStructureLogging getMessageStructureLogging() {
+    return messageStructureLogging;
+  }
+
+  public int getMessageStructureSampleRate() {
+    return messageStructureSampleRate;
+  }
+
+  public List<String> getDeduplicatedResources() {
+    return deduplicatedResources;
+  }
+
+  public boolean isSkipUnusedSegments() {
+    return skipUnusedSegments;
+  }
+
+  public boolean isEr7Extraction() {
+    return er7Extraction;
+  }
+
+  public boolean isParallelResources() {
+    return parallelResources;
+  }
+
+  public int getJexlCacheSize() {
+    return jexlCacheSize;
+  }
+
 }
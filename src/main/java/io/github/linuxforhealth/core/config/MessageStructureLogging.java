@@ -0,0 +1,21 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.config;
+
+/**
+ * Controls when the parsed structure of an HL7 message is written to the log. Rendering the structure is
+ * about as expensive as parsing the message, so it is a diagnostic setting and is off by default.
+ */
+public enum MessageStructureLogging {
+    /** Never log the message structure. */
+    OFF,
+    /** Log the structure of one in every N messages, where N is the configured sample rate. */
+    SAMPLED,
+    /** Log the structure only of messages whose conversion failed. */
+    ON_FAILURE,
+    /** Log the structure of every message. */
+    ALWAYS
+}
@@ -0,0 +1,64 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.data;
+
+import java.util.concurrent.Callable;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlExpression;
+
+/**
+ * JEXL expression validated and compiled by {@link JexlEngineUtil#compile(String)}. Expressions that are a
+ * single call of a registered function, such as GeneralUtils.getEncounterStatus(var1, var2, var3), also
+ * carry a direct call that {@link JexlEngineUtil#evaluate(JexlExpression, java.util.Map)} uses instead of
+ * the JEXL interpreter whenever the arguments allow it. Otherwise it behaves as the JEXL expression.
+ */
+final class CompiledJexlExpression implements JexlExpression {
+
+  private final JexlExpression expression;
+  private final DirectMethodCall directCall;
+
+  CompiledJexlExpression(JexlExpression expression, DirectMethodCall directCall) {
+    this.expression = expression;
+    this.directCall = directCall;
+  }
+
+  JexlExpression getExpression() {
+    return expression;
+  }
+
+  /**
+   * @return Direct call of the function, or null if the expression is only evaluated by JEXL
+   */
+  DirectMethodCall getDirectCall() {
+    return directCall;
+  }
+
+  @Override
+  public Object evaluate(JexlContext context) {
+    return expression.evaluate(context);
+  }
+
+  @Override
+  public String getSourceText() {
+    return expression.getSourceText();
+  }
+
+  @Override
+  public String getParsedText() {
+    return expression.getParsedText();
+  }
+
+  @Override
+  public Callable<Object> callable(JexlContext context) {
+    return expression.callable(context);
+  }
+
+  @Override
+  public String toString() {
+    return getSourceText();
+  }
+
+}
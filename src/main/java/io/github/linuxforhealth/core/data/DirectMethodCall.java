@@ -0,0 +1,185 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.data;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.jexl3.JexlContext;
+import com.google.common.base.Throwables;
+import com.google.common.primitives.Primitives;
+import io.github.linuxforhealth.core.exception.DataExtractionException;
+
+/**
+ * Call of a static method of a registered function class, bound once to a {@link MethodHandle}. Only
+ * expressions of the form Function.method(arg, ...) whose arguments are variable names or plain string
+ * literals are bound, and only when the JEXL interpreter would resolve the same method: there is exactly
+ * one public static method with that name and number of parameters, no variable arguments overload, and
+ * java.lang.Class has no method of that name. When the argument values do not fit the parameters, the
+ * call reports {@link #NOT_APPLICABLE} and the expression is evaluated by JEXL.
+ */
+final class DirectMethodCall {
+
+  static final Object NOT_APPLICABLE = new Object();
+
+  private static final Pattern CALL =
+      Pattern.compile("([A-Za-z_]\\w*)\\.([A-Za-z_]\\w*)\\((.*)\\)", Pattern.DOTALL);
+  private static final Pattern ARGUMENT =
+      Pattern.compile("\\s*(?:([A-Za-z_]\\w*)|\"([^\"\\\\]*)\"|'([^'\\\\]*)')\\s*");
+  private static final Set<String> RESERVED = new HashSet<>(Arrays.asList("null", "true", "false",
+      "empty", "size", "new", "var", "not", "and", "or", "eq", "ne", "lt", "gt", "le", "ge", "div", "mod",
+      "if", "else", "for", "while", "function", "return", "break", "continue"));
+
+  private final String functionName;
+  private final Class<?> target;
+  private final MethodHandle handle;
+  private final Class<?>[] parameterTypes;
+  // Per argument, the variable name, or null for a literal
+  private final String[] variables;
+  private final Object[] literals;
+
+  private DirectMethodCall(String functionName, Class<?> target, Method method, String[] variables,
+      Object[] literals) throws IllegalAccessException {
+    this.functionName = functionName;
+    this.target = target;
+    this.handle = MethodHandles.publicLookup().unreflect(method)
+        .asSpreader(Object[].class, variables.length)
+        .asType(MethodType.methodType(Object.class, Object[].class));
+    this.parameterTypes = method.getParameterTypes();
+    this.variables = variables;
+    this.literals = literals;
+  }
+
+  /**
+   * Binds the expression to a method of its function class.
+   *
+   * @param expression Trimmed expression text
+   * @param function Object registered under the function name
+   * @return {@link DirectMethodCall}, or null if the expression cannot be bound
+   */
+  static DirectMethodCall bind(String expression, Object function) {
+    Matcher call = CALL.matcher(expression);
+    if (!(function instanceof Class) || !call.matches() || RESERVED.contains(call.group(1))) {
+      return null;
+    }
+    List<String> variables = new ArrayList<>();
+    List<Object> literals = new ArrayList<>();
+    if (!parseArguments(call.group(3), variables, literals)) {
+      return null;
+    }
+    Method method = findMethod((Class<?>) function, call.group(2), variables.size());
+    if (method == null) {
+      return null;
+    }
+    try {
+      return new DirectMethodCall(call.group(1), (Class<?>) function, method,
+          variables.toArray(new String[0]), literals.toArray());
+    } catch (IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  private static boolean parseArguments(String text, List<String> variables, List<Object> literals) {
+    if (text.trim().isEmpty()) {
+      return true;
+    }
+    Matcher argument = ARGUMENT.matcher(text);
+    int position = 0;
+    while (true) {
+      argument.region(position, text.length());
+      if (!argument.lookingAt()) {
+        return false;
+      }
+      if (argument.group(1) != null) {
+        if (RESERVED.contains(argument.group(1))) {
+          return false;
+        }
+        variables.add(argument.group(1));
+        literals.add(null);
+      } else {
+        variables.add(null);
+        literals.add(argument.group(2) != null ? argument.group(2) : argument.group(3));
+      }
+      position = argument.end();
+      if (position == text.length()) {
+        return true;
+      }
+      if (text.charAt(position) != ',') {
+        return false;
+      }
+      position++;
+    }
+  }
+
+  private static Method findMethod(Class<?> target, String name, int parameterCount) {
+    // JEXL looks up the method on java.lang.Class before the static methods of the class
+    for (Method method : Class.class.getMethods()) {
+      if (method.getName().equals(name)) {
+        return null;
+      }
+    }
+    Method found = null;
+    for (Method method : target.getMethods()) {
+      if (!method.getName().equals(name)) {
+        continue;
+      }
+      if (method.isVarArgs()) {
+        return null;
+      }
+      if (method.getParameterCount() == parameterCount) {
+        if (found != null || !Modifier.isStatic(method.getModifiers())) {
+          return null;
+        }
+        found = method;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Invokes the method with the argument values read from the context.
+   *
+   * @param context Context the expression is evaluated with
+   * @return Value returned by the method, or {@link #NOT_APPLICABLE} if JEXL must evaluate the expression
+   */
+  Object invoke(JexlContext context) {
+    if (context.get(functionName) != target) {
+      return NOT_APPLICABLE;
+    }
+    Object[] values = new Object[variables.length];
+    for (int i = 0; i < values.length; i++) {
+      if (variables[i] == null) {
+        values[i] = literals[i];
+      } else if (context.has(variables[i])) {
+        values[i] = context.get(variables[i]);
+      } else {
+        return NOT_APPLICABLE;
+      }
+      Class<?> type = parameterTypes[i];
+      if (values[i] == null ? type.isPrimitive() : !Primitives.wrap(type).isInstance(values[i])) {
+        return NOT_APPLICABLE;
+      }
+    }
+    try {
+      return (Object) handle.invokeExact(values);
+    } catch (Exception e) {
+      throw new DataExtractionException("Exception encountered during JEXL expression evaluation", e);
+    } catch (Throwable e) {
+      Throwables.throwIfUnchecked(e);
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
@@ -14,14 +14,16 @@ import org.apache.commons.jexl3.JexlContext;
 import org.apache.commons.jexl3.JexlEngine;
 import org.apache.commons.jexl3.JexlException;
 import org.apache.commons.jexl3.JexlExpression;
-import org.apache.commons.jexl3.MapContext;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.text.StringTokenizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
 import io.github.linuxforhealth.core.exception.DataExtractionException;
 
 public final class JexlEngineUtil {
@@ -32,10 +34,14 @@ public final class JexlEngineUtil {
   private JexlEngine jexl;
   private Map<String, Object> functions = new HashMap<>();
 
-  private Map<String, JexlExpression> exprCache = new HashMap<String, JexlExpression>();
+  // Compiled expressions and conditions by text, shared by all conversions. Bounded, least recently used
+  // entries are evicted first.
+  private final Cache<String, JexlExpression> exprCache;
 
   public JexlEngineUtil() {
     jexl = new JexlBuilder().silent(false).debug(true).strict(true).create();
+    exprCache = CacheBuilder.newBuilder()
+        .maximumSize(ConverterConfiguration.getInstance().getJexlCacheSize()).recordStats().build();
     LOGGER.info("silent:{} , strict :{} ", jexl.isSilent(), jexl.isStrict());
     functions.put(StringUtils.class.getSimpleName(), StringUtils.class);
     functions.put(NumberUtils.class.getSimpleName(), NumberUtils.class);
@@ -65,28 +71,73 @@ public final class JexlEngineUtil {
     validateExpression(trimedJexlExp);
 
     LOGGER.debug("Evaluating expression : {}", trimedJexlExp);
-    Map<String, Object> localContext = new HashMap<>(functions);
-    localContext.putAll(context);
+    return interpret(getExpression(trimedJexlExp), new VariableContext(functions, context));
+  }
 
-    JexlExpression exp = exprCache.get(trimedJexlExp);
-    if(exp == null) {
-    	exp = jexl.createExpression(trimedJexlExp);
-    	exprCache.put(trimedJexlExp, exp);
+  /**
+   * Validates and compiles the expression, so it can be evaluated any number of times with
+   * {@link #evaluate(JexlExpression, Map)}. A single call of a function, such as
+   * GeneralUtils.generateName(prefix, first, middle, family, suffix), is also bound to the method it
+   * calls, so it can be invoked without the JEXL interpreter.
+   *
+   * @param jexlExp Expression text
+   * @return Compiled expression
+   * @throws IllegalArgumentException if the expression is not supported or cannot be compiled
+   */
+  public JexlExpression compile(String jexlExp) {
+    Preconditions.checkArgument(StringUtils.isNotBlank(jexlExp), "jexlExp cannot be blank");
+    String trimedJexlExp = StringUtils.trim(jexlExp);
+    validateExpression(trimedJexlExp);
+    JexlExpression exp;
+    try {
+      // Compiled expressions are held by their templates, so they do not take entries of the bounded cache
+      exp = jexl.createExpression(trimedJexlExp);
+    } catch (JexlException e) {
+      throw new IllegalArgumentException("Expression cannot be compiled: " + trimedJexlExp, e);
     }
-    
-    JexlContext jc = new MapContext();
-    localContext.entrySet().forEach(e -> jc.set(e.getKey(), e.getValue()));
+    String functionName = StringUtils.substringBefore(trimedJexlExp, ".");
+    return new CompiledJexlExpression(exp,
+        DirectMethodCall.bind(trimedJexlExp, functions.get(functionName)));
+  }
+
+  /**
+   * Evaluates an expression returned by {@link #compile(String)}, calling the bound method directly when
+   * the expression has one.
+   *
+   * @param exp Compiled expression
+   * @param context Variables by name
+   * @return Value of the expression
+   */
+  public Object evaluate(JexlExpression exp, Map<String, Object> context) {
+    Preconditions.checkArgument(exp != null, "exp cannot be null");
+    Preconditions.checkArgument(context != null, "context cannot be null");
+    JexlContext jc = new VariableContext(functions, context);
+    if (exp instanceof CompiledJexlExpression) {
+      CompiledJexlExpression compiled = (CompiledJexlExpression) exp;
+      if (compiled.getDirectCall() != null) {
+        Object obj = compiled.getDirectCall().invoke(jc);
+        if (obj != DirectMethodCall.NOT_APPLICABLE) {
+          LOGGER.debug("Invoked expression : {}, returning object {}", compiled, obj);
+          return obj;
+        }
+      }
+      return interpret(compiled.getExpression(), jc);
+    }
+    return interpret(exp, jc);
+  }
+
+  private static Object interpret(JexlExpression exp, JexlContext jc) {
     // Now evaluate the expression, getting the result
     try {
       Object obj = exp.evaluate(jc);
-      LOGGER.debug("Evaluated expression : {}, returning object {}", trimedJexlExp, obj);
+      LOGGER.debug("Evaluated expression : {}, returning object {}", exp.getSourceText(), obj);
       return obj;
     } catch (JexlException e) {
 
       throw new DataExtractionException("Exception encountered during JEXL expression evaluation",
           e);
-      }
     }
+  }
 
 
 
@@ -100,12 +151,8 @@ public final class JexlEngineUtil {
     validateCondition(trimedJexlExp);
 
     LOGGER.debug("Evaluating condiitional expression : {}", trimedJexlExp);
-    Map<String, Object> localContext = new HashMap<>(functions);
-    localContext.putAll(context);
-
-    JexlExpression exp = jexl.createExpression(trimedJexlExp);
-    JexlContext jc = new MapContext();
-    localContext.entrySet().forEach(e -> jc.set(e.getKey(), e.getValue()));
+    JexlExpression exp = getExpression(trimedJexlExp);
+    JexlContext jc = new VariableContext(functions, context);
     // Now evaluate the expression, getting the result
 
     boolean obj = (boolean) exp.evaluate(jc);
@@ -116,6 +163,31 @@ public final class JexlEngineUtil {
   }
 
 
+  private JexlExpression getExpression(String jexlExp) {
+    JexlExpression exp = exprCache.getIfPresent(jexlExp);
+    if (exp == null) {
+      // Compiling twice when two threads miss at once is harmless, both compile the same expression
+      exp = jexl.createExpression(jexlExp);
+      exprCache.put(jexlExp, exp);
+    }
+    return exp;
+  }
+
+  /**
+   * @return Number of evaluations that found their compiled expression in the cache
+   */
+  public long getCacheHitCount() {
+    return exprCache.stats().hitCount();
+  }
+
+  /**
+   * @return Number of evaluations that had to compile their expression
+   */
+  public long getCacheMissCount() {
+    return exprCache.stats().missCount();
+  }
+
+
   static void validateCondition(String input) {
     boolean isValid = false;
     StringTokenizer strtoken = new StringTokenizer(input, " ").setIgnoreEmptyTokens(true);
@@ -151,4 +223,45 @@ public final class JexlEngineUtil {
     }
 
   }
+
+  /**
+   * Context that reads the variables, then the functions, without copying either. Variables set by an
+   * expression are kept in the context, so the maps passed in are never modified.
+   */
+  private static final class VariableContext implements JexlContext {
+    private final Map<String, Object> functions;
+    private final Map<String, Object> variables;
+    private Map<String, Object> assigned;
+
+    private VariableContext(Map<String, Object> functions, Map<String, Object> variables) {
+      this.functions = functions;
+      this.variables = variables;
+    }
+
+    @Override
+    public Object get(String name) {
+      if (assigned != null && assigned.containsKey(name)) {
+        return assigned.get(name);
+      }
+      Object value = variables.get(name);
+      if (value != null || variables.containsKey(name)) {
+        return value;
+      }
+      return functions.get(name);
+    }
+
+    @Override
+    public void set(String name, Object value) {
+      if (assigned == null) {
+        assigned = new HashMap<>();
+      }
+      assigned.put(name, value);
+    }
+
+    @Override
+    public boolean has(String name) {
+      return (assigned != null && assigned.containsKey(name)) || variables.containsKey(name)
+          || functions.containsKey(name);
+    }
+  }
 }
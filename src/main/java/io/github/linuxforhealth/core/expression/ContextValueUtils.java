@@ -91,6 +91,22 @@ public class ContextValueUtils {
     }
   }
 
+  /**
+   * Returns the key that {@link #getVariableValuesFromVariableContextMap} looks the variable up with,
+   * when the lookup does not depend on the context values, so callers can resolve it once.
+   *
+   * @param varName Variable, such as $var1
+   * @param isUseGroup true if the variable value is looked up for the group
+   * @return Key of the variable in the context map, or null if the full lookup is needed
+   */
+  public static String getDirectLookupName(String varName, boolean isUseGroup) {
+    if (StringUtils.isBlank(varName) || isUseGroup || VariableUtils.isFuzzyMatch(varName)
+        || (varName.startsWith("$") && varName.contains(":"))) {
+      return null;
+    }
+    return VariableUtils.getVarName(varName);
+  }
+
   private static EvaluationResult getPrefixedValues(String keyname,
       Map<String, EvaluationResult> contextValues) {
     List<Object> obj = contextValues.entrySet().stream()
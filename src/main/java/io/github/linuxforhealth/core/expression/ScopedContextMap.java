@@ -0,0 +1,161 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.expression;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import com.google.common.collect.ImmutableMap;
+import io.github.linuxforhealth.api.EvaluationResult;
+
+/**
+ * Immutable context map made of a chain of scopes. Adding bindings creates a new scope on top of the
+ * current one instead of copying the map, so the context passed down through expressions, variables and
+ * specifications costs constant time per binding. A binding hides the bindings of the same name in outer
+ * scopes, the same as putting it in a copy of the map would. Lookups walk the chain; iteration and size
+ * use the flattened map, which is built on first use and reproduces the copy-then-put order of a
+ * {@link HashMap}.
+ */
+public final class ScopedContextMap extends AbstractMap<String, EvaluationResult> {
+
+  // Chains deeper than this are flattened into a new root so lookups stay cheap
+  private static final int MAX_DEPTH = 32;
+
+  private final ScopedContextMap parent;
+  private final int depth;
+  // Either bindings is set, or the scope holds the single binding key=value
+  private final Map<String, EvaluationResult> bindings;
+  private final String key;
+  private final EvaluationResult value;
+  private volatile Map<String, EvaluationResult> flattened;
+
+  private ScopedContextMap(ScopedContextMap parent, Map<String, EvaluationResult> bindings,
+      String key, EvaluationResult value) {
+    this.parent = parent;
+    this.depth = parent != null ? parent.depth + 1 : 0;
+    this.bindings = bindings;
+    this.key = key;
+    this.value = value;
+    this.flattened = parent == null ? bindings : null;
+  }
+
+  /**
+   * Returns the context values as a scoped context. Scoped contexts and immutable maps are used as they
+   * are, any other map is copied once, so later changes to it are not seen.
+   *
+   * @param contextValues Context values
+   * @return {@link ScopedContextMap}
+   */
+  public static ScopedContextMap of(Map<String, EvaluationResult> contextValues) {
+    if (contextValues instanceof ScopedContextMap) {
+      return (ScopedContextMap) contextValues;
+    } else if (contextValues instanceof ImmutableMap) {
+      return new ScopedContextMap(null, contextValues, null, null);
+    } else {
+      return new ScopedContextMap(null,
+          Collections.unmodifiableMap(new HashMap<>(contextValues)), null, null);
+    }
+  }
+
+  /**
+   * Returns a new context with the binding added.
+   *
+   * @param name Name of the value
+   * @param evaluationResult Value
+   * @return {@link ScopedContextMap}
+   */
+  public ScopedContextMap with(String name, EvaluationResult evaluationResult) {
+    return bounded(new ScopedContextMap(this, null, name, evaluationResult));
+  }
+
+  /**
+   * Returns a new context with all the bindings added. The bindings are copied.
+   *
+   * @param values Values by name
+   * @return {@link ScopedContextMap}
+   */
+  public ScopedContextMap withAll(Map<String, EvaluationResult> values) {
+    if (values == null || values.isEmpty()) {
+      return this;
+    }
+    return bounded(
+        new ScopedContextMap(this, Collections.unmodifiableMap(new HashMap<>(values)), null, null));
+  }
+
+  private static ScopedContextMap bounded(ScopedContextMap scope) {
+    if (scope.depth < MAX_DEPTH) {
+      return scope;
+    }
+    return new ScopedContextMap(null, scope.flatten(), null, null);
+  }
+
+  @Override
+  public EvaluationResult get(Object name) {
+    for (ScopedContextMap scope = this; scope != null; scope = scope.parent) {
+      if (scope.bindings == null) {
+        if (Objects.equals(scope.key, name)) {
+          return scope.value;
+        }
+      } else {
+        EvaluationResult result = scope.bindings.get(name);
+        if (result != null || scope.bindings.containsKey(name)) {
+          return result;
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean containsKey(Object name) {
+    for (ScopedContextMap scope = this; scope != null; scope = scope.parent) {
+      if (scope.bindings == null ? Objects.equals(scope.key, name)
+          : scope.bindings.containsKey(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    for (ScopedContextMap scope = this; scope != null; scope = scope.parent) {
+      if (scope.bindings == null || !scope.bindings.isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int size() {
+    return flatten().size();
+  }
+
+  @Override
+  public Set<Entry<String, EvaluationResult>> entrySet() {
+    return flatten().entrySet();
+  }
+
+  private Map<String, EvaluationResult> flatten() {
+    Map<String, EvaluationResult> result = flattened;
+    if (result == null) {
+      Map<String, EvaluationResult> values = new HashMap<>(parent.flatten());
+      if (bindings == null) {
+        values.put(key, value);
+      } else {
+        values.putAll(bindings);
+      }
+      result = Collections.unmodifiableMap(values);
+      flattened = result;
+    }
+    return result;
+  }
+
+}
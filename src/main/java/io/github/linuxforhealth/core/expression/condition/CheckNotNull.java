@@ -14,13 +14,16 @@ import io.github.linuxforhealth.core.expression.VariableUtils;
 public class CheckNotNull implements Condition {
 
   public static final String NOT_NULL = "NOT_NULL";
-  private String var1;
-  private boolean useGroup;
+  private final String var1;
+  private final boolean useGroup;
+  // Name to look up directly in the context, or null if the variable needs the full lookup
+  private final String varName;
 
 
   public CheckNotNull(String var1, boolean useGroup) {
     this.var1 = var1;
     this.useGroup = useGroup;
+    this.varName = ContextValueUtils.getDirectLookupName(var1, false);
 
   }
 
@@ -28,8 +31,9 @@ public class CheckNotNull implements Condition {
 
   @Override
   public boolean test(Map<String, EvaluationResult> contextVariables) {
-    EvaluationResult variable1 = ContextValueUtils.getVariableValuesFromVariableContextMap(var1,
-        contextVariables, false, VariableUtils.isFuzzyMatch(var1));
+    EvaluationResult variable1 = varName != null ? contextVariables.get(varName)
+        : ContextValueUtils.getVariableValuesFromVariableContextMap(var1, contextVariables, false,
+            VariableUtils.isFuzzyMatch(var1));
     
     return variable1 != null && !variable1.isEmpty();
   }
@@ -13,12 +13,15 @@ import io.github.linuxforhealth.core.expression.VariableUtils;
 
 public class CheckNull implements Condition {
   public static final String NULL = "NULL";
-  private String var1;
-  private boolean useGroup;
+  private final String var1;
+  private final boolean useGroup;
+  // Name to look up directly in the context, or null if the variable needs the full lookup
+  private final String varName;
 
   public CheckNull(String var1, boolean useGroup) {
     this.var1 = var1;
     this.useGroup = useGroup;
+    this.varName = ContextValueUtils.getDirectLookupName(var1, useGroup);
 
   }
 
@@ -26,8 +29,9 @@ public class CheckNull implements Condition {
 
   @Override
   public boolean test(Map<String, EvaluationResult> contextVariables) {
-    EvaluationResult variable1 = ContextValueUtils.getVariableValuesFromVariableContextMap(var1,
-        contextVariables, this.useGroup, VariableUtils.isFuzzyMatch(var1));
+    EvaluationResult variable1 = varName != null ? contextVariables.get(varName)
+        : ContextValueUtils.getVariableValuesFromVariableContextMap(var1, contextVariables, this.useGroup,
+            VariableUtils.isFuzzyMatch(var1));
 
     return variable1 == null || variable1.isEmpty();
   }
@@ -6,6 +6,7 @@
 package io.github.linuxforhealth.core.expression.condition;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import com.google.common.base.Preconditions;
@@ -14,13 +15,13 @@ import io.github.linuxforhealth.api.EvaluationResult;
 
 public class CompoundAndCondition implements Condition {
 
-  private List<Condition> conditions;
+  private final Condition[] conditions;
 
 
   public CompoundAndCondition(List<Condition> conditions) {
     Preconditions.checkArgument(conditions != null && !conditions.isEmpty(),
         "conditions cannot be null or empty");
-    this.conditions = conditions;
+    this.conditions = conditions.toArray(new Condition[0]);
   }
 
 
@@ -38,7 +39,7 @@ public class CompoundAndCondition implements Condition {
 
 
   public List<Condition> getConditions() {
-    return new ArrayList<>(conditions);
+    return new ArrayList<>(Arrays.asList(conditions));
   }
 
 
@@ -6,6 +6,7 @@
 package io.github.linuxforhealth.core.expression.condition;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import com.google.common.base.Preconditions;
@@ -14,14 +15,14 @@ import io.github.linuxforhealth.api.EvaluationResult;
 
 public class CompoundORCondition implements Condition {
 
-  private List<Condition> conditions;
+  private final Condition[] conditions;
 
 
 
   public CompoundORCondition(List<Condition> conditions) {
     Preconditions.checkArgument(conditions != null && !conditions.isEmpty(),
         "onditions cannot be null or empty");
-    this.conditions = new ArrayList<>(conditions);
+    this.conditions = conditions.toArray(new Condition[0]);
   }
 
 
@@ -39,7 +40,7 @@ public class CompoundORCondition implements Condition {
 
 
   public List<Condition> getConditions() {
-    return new ArrayList<>(conditions);
+    return new ArrayList<>(Arrays.asList(conditions));
   }
 
 
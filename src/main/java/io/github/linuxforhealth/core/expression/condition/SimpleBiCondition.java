@@ -6,60 +6,76 @@
 package io.github.linuxforhealth.core.expression.condition;
 
 import java.util.Map;
+import com.google.common.primitives.Ints;
+import ca.uhn.hl7v2.model.v26.datatype.IS;
+import ca.uhn.hl7v2.model.v26.datatype.NULLDT;
+import ca.uhn.hl7v2.model.v26.datatype.ST;
 import io.github.linuxforhealth.api.Condition;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.core.expression.VariableUtils;
 import io.github.linuxforhealth.hl7.data.Hl7DataHandlerUtil;
 
+/**
+ * Compares a variable with a literal or another variable. Variable names, the literal and the
+ * predicates for string and integer values are resolved when the condition is created, so testing the
+ * condition only looks up the values and applies the predicate.
+ */
 public class SimpleBiCondition implements Condition {
 
-  private String var1;
-
+  private static final String STRING = "String";
+  private static final String INTEGER = "Integer";
 
+  private final String var1;
+  private final Object var2;
+  private final String conditionOperator;
 
-  private Object var2;
-  private String conditionOperator;
+  // Resolved when the condition is created
+  private final String var1Name;
+  private final String var2Name;
+  private final Integer var2Integer;
+  private final ConditionPredicateEnum stringPredicate;
+  private final ConditionPredicateEnum integerPredicate;
 
 
   public SimpleBiCondition(String var1, String var2, String conditionOperator) {
     this.var1 = var1;
     this.var2 = var2;
     this.conditionOperator = conditionOperator;
+    this.var1Name = VariableUtils.isVar(var1) ? VariableUtils.getVarName(var1) : null;
+    this.var2Name = VariableUtils.isVar(var2) ? VariableUtils.getVarName(var2) : null;
+    this.var2Integer = var2Name == null && var2 != null ? Ints.tryParse(var2) : null;
+    this.stringPredicate = ConditionPredicateEnum.getConditionPredicate(conditionOperator, STRING);
+    this.integerPredicate = ConditionPredicateEnum.getConditionPredicate(conditionOperator, INTEGER);
   }
 
 
 
   @Override
   public boolean test(Map<String, EvaluationResult> contextVariables) {
-    Object var1Value = null;
-    EvaluationResult variable1;
-    if (VariableUtils.isVar(var1)) {
-      variable1 = contextVariables.get(VariableUtils.getVarName(var1));
-      if (variable1 != null && !variable1.isEmpty()) {
-        var1Value = variable1.getValue();
-      }
-    } else {
+    if (var1Name == null) {
       throw new IllegalArgumentException("First value should be a variable");
     }
-
+    EvaluationResult variable1 = contextVariables.get(var1Name);
+    if (variable1 == null || variable1.isEmpty()) {
+      return false;
+    }
+    Object var1Value = variable1.getValue();
     Object var2Value = getValue(contextVariables);
 
     if (var1Value != null && var2Value != null) {
 
       // Some classes have string values, but are not strings and must be converted first.
-      if (var1Value.getClass().getTypeName().equalsIgnoreCase("ca.uhn.hl7v2.model.v26.datatype.ST")
-      || var1Value.getClass().getTypeName().equalsIgnoreCase("ca.uhn.hl7v2.model.v26.datatype.IS")
-      || var1Value.getClass().getTypeName().equalsIgnoreCase("ca.uhn.hl7v2.model.v26.datatype.NULLDT")){
+      Class<?> var1Class = var1Value.getClass();
+      if (var1Class == ST.class || var1Class == IS.class || var1Class == NULLDT.class) {
         var1Value = Hl7DataHandlerUtil.getStringValue(var1Value);
       }
-    
-      ConditionPredicateEnum condEnum = ConditionPredicateEnum
-          .getConditionPredicate(this.conditionOperator, variable1.getIdentifier());
+
+      ConditionPredicateEnum condEnum = getPredicate(variable1.getIdentifier());
       if (condEnum != null) {
         // if var2 is a string and must be converted to an integer to test
-        if (var2Value.getClass().getTypeName().equalsIgnoreCase("java.lang.String") 
-            && condEnum.getKlassU().getTypeName().equalsIgnoreCase("java.lang.Integer")) {
-          var2Value = Integer.parseInt((String)var2Value);
+        if (var2Value instanceof String && condEnum.getKlassU() == Integer.class) {
+          var2Value = var2Value == var2 && var2Integer != null ? var2Integer
+              : Integer.valueOf(Integer.parseInt((String) var2Value));
         }
         return condEnum.getPredicate().test(var1Value, var2Value);
       }
@@ -69,18 +85,26 @@ public class SimpleBiCondition implements Condition {
   }
 
 
+  private ConditionPredicateEnum getPredicate(String identifier) {
+    if (STRING.equals(identifier)) {
+      return stringPredicate;
+    } else if (INTEGER.equals(identifier)) {
+      return integerPredicate;
+    } else {
+      return ConditionPredicateEnum.getConditionPredicate(this.conditionOperator, identifier);
+    }
+  }
+
 
   private Object getValue(Map<String, EvaluationResult> contextVariables) {
-    Object var2Value = null;
-    if (var2 instanceof String && VariableUtils.isVar((String) var2)) {
-      EvaluationResult variable = contextVariables.get(VariableUtils.getVarName((String) var2));
-      if (variable != null && !variable.isEmpty()) {
-        var2Value = variable.getValue();
-      }
-    } else {
-      var2Value = var2;
+    if (var2Name == null) {
+      return var2;
+    }
+    EvaluationResult variable = contextVariables.get(var2Name);
+    if (variable != null && !variable.isEmpty()) {
+      return variable.getValue();
     }
-    return var2Value;
+    return null;
   }
 
 
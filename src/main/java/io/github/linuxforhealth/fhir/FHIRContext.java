@@ -5,6 +5,12 @@
  */
 package io.github.linuxforhealth.fhir;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -29,8 +35,11 @@ public class FHIRContext {
     private static final Logger LOGGER = LoggerFactory.getLogger(FHIRContext.class);
 
     private static final FhirContext CTX = FhirContext.forR4();
-    private IParser parser;
-    private static FhirValidator validator;
+    // Encoding buffers grow to the largest bundle encoded on their thread; larger buffers are not kept
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<EncodingBuffer> ENCODING_BUFFER = ThreadLocal.withInitial(EncodingBuffer::new);
+    // HAPI parsers are not thread safe, so each thread gets its own parser configured for this context.
+    private final ThreadLocal<IParser> parser;
     private boolean validateResource;
     private HashMap<String, String> properties;
     private String zoneIdText;
@@ -45,8 +54,7 @@ public class FHIRContext {
      * 
      */
     public FHIRContext(boolean isPrettyPrint, boolean validateResource, Map<String,String> properties, String zoneIdText) {
-        parser = CTX.newJsonParser();
-        parser.setPrettyPrint(isPrettyPrint);
+        parser = ThreadLocal.withInitial(() -> CTX.newJsonParser().setPrettyPrint(isPrettyPrint));
         this.validateResource = validateResource;
         this.properties = (HashMap<String, String>) properties;
         this.zoneIdText = zoneIdText;
@@ -68,8 +76,14 @@ public class FHIRContext {
         this(Constants.DEFAULT_PRETTY_PRINT, false, new HashMap<>(),null);
     }
 
+    /**
+     * Returns the JSON parser for the calling thread. The same parser instance is reused for every call
+     * made from that thread.
+     * 
+     * @return {@link IParser}
+     */
     public IParser getParser() {
-        return parser;
+        return parser.get();
     }
 
     public FhirContext getCtx() {
@@ -77,8 +91,7 @@ public class FHIRContext {
     }
 
     public static FhirValidator getValidator() {
-        initValidator();
-        return validator;
+        return ValidatorHolder.VALIDATOR;
     }
 
     public Map<String, String> getProperties() {
@@ -90,7 +103,41 @@ public class FHIRContext {
     }
 
     public String encodeResourceToString(Bundle bundle){
-        return this.parser.encodeResourceToString(bundle);
+        return getParser().encodeResourceToString(bundle);
+    }
+
+    /**
+     * Encodes the bundle as UTF-8 JSON directly to the output stream. The stream is flushed but not closed.
+     * 
+     * @param bundle Bundle to encode
+     * @param out Output stream to write to
+     * @throws IOException - if the stream cannot be written
+     */
+    public void encodeResourceToStream(Bundle bundle, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        getParser().encodeResourceToWriter(bundle, writer);
+        writer.flush();
+    }
+
+    /**
+     * Encodes the bundle as UTF-8 JSON bytes, using a buffer reused by the calling thread.
+     * 
+     * @param bundle Bundle to encode
+     * @return UTF-8 encoded JSON
+     */
+    public byte[] encodeResourceToBytes(Bundle bundle) {
+        EncodingBuffer buffer = ENCODING_BUFFER.get();
+        buffer.reset();
+        try {
+            encodeResourceToStream(bundle, buffer);
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failure encoding bundle.", e);
+        } finally {
+            if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                ENCODING_BUFFER.remove();
+            }
+        }
     }
 
     public void validate(Bundle bundle) {
@@ -120,14 +167,28 @@ public class FHIRContext {
 
     }
 
-    private static void initValidator() {
-        if (validator == null) {
-            validator = CTX.newValidator();
+    // The validator is created on first use; class initialization makes it visible to every thread without a lock
+    private static class ValidatorHolder {
+        private static final FhirValidator VALIDATOR = createValidator();
+
+        private static FhirValidator createValidator() {
+            FhirValidator validator = CTX.newValidator();
             // Create a validation module and register it
             IValidatorModule module = new FhirInstanceValidator(CTX);
             validator.registerValidatorModule(module);
+            return validator;
         }
+    }
+
+    private static class EncodingBuffer extends ByteArrayOutputStream {
 
+        EncodingBuffer() {
+            super(8192);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
     }
 
 }
@@ -0,0 +1,230 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.fhir;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseExtension;
+import org.hl7.fhir.instance.model.api.IBaseHasExtensions;
+import org.hl7.fhir.instance.model.api.IBaseHasModifierExtensions;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.hl7.fhir.r4.model.Element;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementDefinition;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.parser.DataFormatException;
+
+/**
+ * Builds HAPI R4 resources directly from the resolved values of a resource template, using the element
+ * definitions of the {@link FhirContext}, instead of writing the values to a JSON string and parsing it back.
+ * <p>
+ * Only values that map onto the model exactly the way the JSON parser would map them are built. Unknown
+ * element names, contained resources, lists for single valued elements and values of Java types without an
+ * obvious JSON representation are not; {@link #build(Class, Map)} returns null for those resources so the
+ * caller can fall back to the JSON parser.
+ */
+public class FHIRResourceBuilder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FHIRResourceBuilder.class);
+
+    private static final String RESOURCE_TYPE = "resourceType";
+    private static final String ID = "id";
+    private static final String URL = "url";
+    private static final String EXTENSION = "extension";
+    private static final String MODIFIER_EXTENSION = "modifierExtension";
+
+    private final FhirContext ctx;
+
+    public FHIRResourceBuilder(FhirContext ctx) {
+        Preconditions.checkArgument(ctx != null, "ctx cannot be null");
+        this.ctx = ctx;
+    }
+
+    /**
+     * Builds a resource of the given type from the resolved resource values.
+     *
+     * @param resourceClass Type of resource to build
+     * @param values Resolved resource values, keyed by FHIR element name
+     * @return The resource, or null if the values cannot be mapped directly and have to go through the JSON
+     *         parser
+     */
+    public <T extends Resource> T build(Class<T> resourceClass, Map<String, Object> values) {
+        Preconditions.checkArgument(resourceClass != null, "resourceClass cannot be null");
+        Preconditions.checkArgument(values != null, "values cannot be null");
+        try {
+            return buildResource(resourceClass, values);
+        } catch (UnsupportedValueException e) {
+            LOGGER.debug("Element {} of {} cannot be built directly.", e.getMessage(),
+                    resourceClass.getSimpleName());
+            return null;
+        } catch (DataFormatException e) {
+            // Invalid values are reported by the JSON parser, the same way as before direct building
+            LOGGER.debug("Resource {} cannot be built directly.", resourceClass.getSimpleName());
+            return null;
+        }
+    }
+
+    private <T extends Resource> T buildResource(Class<T> resourceClass, Map<String, Object> values) {
+        RuntimeResourceDefinition definition = ctx.getResourceDefinition(resourceClass);
+        T resource = resourceClass.cast(definition.newInstance());
+        String id = null;
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            String name = entry.getKey();
+            if (entry.getValue() == null || RESOURCE_TYPE.equals(name)) {
+                continue;
+            }
+            if (ID.equals(name)) {
+                id = toPrimitiveString(name, entry.getValue());
+            } else {
+                setChild(definition, resource, name, entry.getValue());
+            }
+        }
+        if (id != null) {
+            // The parser qualifies the id with the resource type, and with the version when meta has one
+            if (StringUtils.isBlank(id) || id.indexOf('/') >= 0
+                    || (resource.hasMeta() && resource.getMeta().hasVersionId())) {
+                throw new UnsupportedValueException(ID);
+            }
+            resource.setId(new IdType(definition.getName(), id));
+        }
+        return resource;
+    }
+
+    private void populate(BaseRuntimeElementCompositeDefinition<?> definition, IBase target, String name,
+            Object value) {
+        if (!(value instanceof Map)) {
+            throw new UnsupportedValueException(name);
+        }
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            if (!(entry.getKey() instanceof String)) {
+                throw new UnsupportedValueException(name);
+            }
+            if (entry.getValue() != null) {
+                setChild(definition, target, (String) entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void setChild(BaseRuntimeElementCompositeDefinition<?> definition, IBase target, String name,
+            Object value) {
+        if (EXTENSION.equals(name) && target instanceof IBaseHasExtensions) {
+            for (Object item : asList(value)) {
+                addExtension(((IBaseHasExtensions) target).addExtension(), name, item);
+            }
+        } else if (MODIFIER_EXTENSION.equals(name) && target instanceof IBaseHasModifierExtensions) {
+            for (Object item : asList(value)) {
+                addExtension(((IBaseHasModifierExtensions) target).addModifierExtension(), name, item);
+            }
+        } else if (URL.equals(name) && target instanceof IBaseExtension) {
+            ((IBaseExtension<?, ?>) target).setUrl(toPrimitiveString(name, value));
+        } else if (ID.equals(name) && target instanceof Element) {
+            ((Element) target).setId(toPrimitiveString(name, value));
+        } else {
+            BaseRuntimeChildDefinition child = definition.getChildByName(name);
+            if (child == null) {
+                throw new UnsupportedValueException(name);
+            }
+            if (value instanceof List) {
+                // The parser treats a repeated value for a single valued element as an error
+                if (child.getMax() == 1) {
+                    throw new UnsupportedValueException(name);
+                }
+                for (Object item : (List<?>) value) {
+                    if (item != null) {
+                        addValue(child, target, name, item);
+                    }
+                }
+            } else {
+                addValue(child, target, name, value);
+            }
+        }
+    }
+
+    private void addValue(BaseRuntimeChildDefinition child, IBase target, String name, Object value) {
+        BaseRuntimeElementDefinition<?> childDefinition = child.getChildByName(name);
+        if (childDefinition == null || childDefinition instanceof RuntimeResourceDefinition) {
+            throw new UnsupportedValueException(name);
+        }
+        IBase element = childDefinition.newInstance(child.getInstanceConstructorArguments());
+        if (element instanceof IPrimitiveType) {
+            try {
+                ((IPrimitiveType<?>) element).setValueAsString(toPrimitiveString(name, value));
+            } catch (DataFormatException | IllegalArgumentException e) {
+                // Enumerations reject unknown codes with IllegalArgumentException
+                throw new UnsupportedValueException(name);
+            }
+        } else if (childDefinition instanceof BaseRuntimeElementCompositeDefinition) {
+            populate((BaseRuntimeElementCompositeDefinition<?>) childDefinition, element, name, value);
+        } else {
+            throw new UnsupportedValueException(name);
+        }
+        child.getMutator().addValue(target, element);
+    }
+
+    private void addExtension(IBaseExtension<?, ?> extension, String name, Object value) {
+        BaseRuntimeElementDefinition<?> definition = ctx.getElementDefinition(extension.getClass());
+        if (!(definition instanceof BaseRuntimeElementCompositeDefinition)) {
+            throw new UnsupportedValueException(name);
+        }
+        populate((BaseRuntimeElementCompositeDefinition<?>) definition, extension, name, value);
+    }
+
+    private static List<?> asList(Object value) {
+        return value instanceof List ? (List<?>) value : Collections.singletonList(value);
+    }
+
+    /**
+     * Returns the text the JSON parser would have received for the value, which is how the value was written
+     * by Jackson.
+     */
+    private static String toPrimitiveString(String name, Object value) {
+        if (value instanceof String) {
+            return (String) value;
+        }
+        if (value instanceof Boolean || value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof BigInteger || value instanceof UUID
+                || value instanceof URI) {
+            return value.toString();
+        }
+        if (value instanceof Float || value instanceof Double || value instanceof BigDecimal) {
+            String text = value.toString();
+            // Exponents, NaN and infinity are not written the same way once they go through JSON
+            if (text.indexOf('E') < 0 && !Double.isNaN(((Number) value).doubleValue())
+                    && !Double.isInfinite(((Number) value).doubleValue())) {
+                return text;
+            }
+        }
+        throw new UnsupportedValueException(name);
+    }
+
+    // Signals a value that has to be mapped by the JSON parser. The message is the element name only.
+    private static class UnsupportedValueException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedValueException(String elementName) {
+            super(elementName, null, false, false);
+        }
+    }
+
+}
@@ -17,7 +17,7 @@ public class FHIRResourceMapper {
 
   private static FHIRResourceMapper fhirResourceMapper;
 
-  private Map<String, String> resourceMapping;
+  private final Map<String, String> resourceMapping;
 
   private FHIRResourceMapper() {
     String resource = ResourceReader.getInstance().getResource(Constants.RESOURCE_MAPPING_PATH);
@@ -0,0 +1,215 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.fhir;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Bundle.BundleEntryComponent;
+import org.hl7.fhir.r4.model.Resource;
+
+import com.google.common.base.Preconditions;
+
+import ca.uhn.fhir.parser.IParser;
+
+/**
+ * Writes converted resources in the FHIR Bulk Data NDJSON format: one file per resource type, named after the
+ * type (Patient.ndjson, Observation.ndjson, ...), holding one resource per line. Files are created in the
+ * output directory when the first resource of their type is written, and are optionally GZIP compressed
+ * (Patient.ndjson.gz). Each file is flushed after every batch of resources written to it and when the writer
+ * is closed.
+ * <p>
+ * Writes are synchronized, so one writer can collect the bundles of conversions running on several threads.
+ */
+public class NdjsonBulkDataWriter implements Closeable {
+
+    public static final int DEFAULT_FLUSH_BATCH_SIZE = 1000;
+
+    private static final String NDJSON_EXTENSION = ".ndjson";
+    private static final String GZIP_EXTENSION = ".gz";
+
+    private final Path outputDirectory;
+    private final boolean gzip;
+    private final int flushBatchSize;
+    private final IParser parser;
+    private final Map<String, ResourceFile> files = new TreeMap<>();
+    private boolean closed;
+
+    private NdjsonBulkDataWriter(Builder builder) {
+        this.outputDirectory = builder.outputDirectory;
+        this.gzip = builder.gzip;
+        this.flushBatchSize = builder.flushBatchSize;
+        // NDJSON needs every resource on a single line
+        this.parser = new FHIRContext().getCtx().newJsonParser().setPrettyPrint(false);
+    }
+
+    public static class Builder {
+        private final Path outputDirectory;
+        private boolean gzip;
+        private int flushBatchSize = DEFAULT_FLUSH_BATCH_SIZE;
+
+        /**
+         * @param outputDirectory Directory the NDJSON files are written to, created if it does not exist
+         */
+        public Builder(Path outputDirectory) {
+            Preconditions.checkArgument(outputDirectory != null, "outputDirectory cannot be null");
+            this.outputDirectory = outputDirectory;
+        }
+
+        public Builder withGzip() {
+            this.gzip = true;
+            return this;
+        }
+
+        public Builder withFlushBatchSize(int flushBatchSize) {
+            Preconditions.checkArgument(flushBatchSize > 0, "flushBatchSize must be greater than 0");
+            this.flushBatchSize = flushBatchSize;
+            return this;
+        }
+
+        public NdjsonBulkDataWriter build() {
+            return new NdjsonBulkDataWriter(this);
+        }
+    }
+
+    /**
+     * Writes every resource of the bundle to the file for its resource type.
+     *
+     * @param bundle Converted {@link Bundle}
+     * @throws IOException - if a file cannot be created or written
+     */
+    public synchronized void write(Bundle bundle) throws IOException {
+        Preconditions.checkArgument(bundle != null, "bundle cannot be null");
+        Preconditions.checkState(!closed, "Writer is closed.");
+        for (BundleEntryComponent entry : bundle.getEntry()) {
+            if (entry.hasResource()) {
+                write(entry.getResource());
+            }
+        }
+    }
+
+    /**
+     * Writes the resource to the file for its resource type.
+     *
+     * @param resource FHIR {@link Resource}
+     * @throws IOException - if the file cannot be created or written
+     */
+    public synchronized void write(Resource resource) throws IOException {
+        Preconditions.checkArgument(resource != null, "resource cannot be null");
+        Preconditions.checkState(!closed, "Writer is closed.");
+        String resourceType = resource.fhirType();
+        ResourceFile file = files.get(resourceType);
+        if (file == null) {
+            file = open(resourceType);
+            files.put(resourceType, file);
+        }
+        parser.encodeResourceToWriter(resource, file.writer);
+        file.writer.write('\n');
+        file.count++;
+        if (file.count % flushBatchSize == 0) {
+            file.writer.flush();
+        }
+    }
+
+    /**
+     * Flushes the resources written so far to every file.
+     *
+     * @throws IOException - if a file cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        for (ResourceFile file : files.values()) {
+            file.writer.flush();
+        }
+    }
+
+    /**
+     * Number of resources written, by resource type.
+     *
+     * @return Map of resource type to count
+     */
+    public synchronized Map<String, Long> getResourceCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        files.forEach((type, file) -> counts.put(type, file.count));
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Files written, by resource type.
+     *
+     * @return Map of resource type to file
+     */
+    public synchronized Map<String, Path> getFiles() {
+        Map<String, Path> paths = new TreeMap<>();
+        files.forEach((type, file) -> paths.put(type, file.path));
+        return Collections.unmodifiableMap(paths);
+    }
+
+    /**
+     * Flushes and closes every file. Closing a closed writer has no effect.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        IOException failure = null;
+        for (ResourceFile file : files.values()) {
+            try {
+                file.writer.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private ResourceFile open(String resourceType) throws IOException {
+        Files.createDirectories(outputDirectory);
+        Path path = outputDirectory.resolve(resourceType + NDJSON_EXTENSION + (gzip ? GZIP_EXTENSION : ""));
+        OutputStream out = Files.newOutputStream(path);
+        try {
+            if (gzip) {
+                // Sync flush so that every flushed batch can be read back from the file
+                out = new GZIPOutputStream(out, true);
+            }
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+        return new ResourceFile(path, new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    private static class ResourceFile {
+        private final Path path;
+        private final Writer writer;
+        private long count;
+
+        ResourceFile(Path path, Writer writer) {
+            this.path = path;
+            this.writer = writer;
+        }
+    }
+
+}
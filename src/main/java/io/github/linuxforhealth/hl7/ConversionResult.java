@@ -0,0 +1,70 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Outcome of converting one HL7 message that was part of a batch. Holds either the converted value or
+ * the exception that stopped the conversion, together with the position of the message in the input.
+ *
+ * @param <T> Type of the converted value, for example the bundle JSON String or the {@link org.hl7.fhir.r4.model.Bundle}
+ */
+public class ConversionResult<T> {
+
+    private final int index;
+    private final T value;
+    private final RuntimeException exception;
+
+    private ConversionResult(int index, T value, RuntimeException exception) {
+        this.index = index;
+        this.value = value;
+        this.exception = exception;
+    }
+
+    public static <T> ConversionResult<T> success(int index, T value) {
+        Preconditions.checkArgument(value != null, "value cannot be null");
+        return new ConversionResult<>(index, value, null);
+    }
+
+    public static <T> ConversionResult<T> failure(int index, RuntimeException exception) {
+        Preconditions.checkArgument(exception != null, "exception cannot be null");
+        return new ConversionResult<>(index, null, exception);
+    }
+
+    /**
+     * Position of the message in the input, starting at 0.
+     *
+     * @return int
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Converted value, or null if the conversion failed.
+     *
+     * @return T
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * Exception encountered while converting the message, or null if the conversion succeeded.
+     *
+     * @return {@link RuntimeException}
+     */
+    public RuntimeException getException() {
+        return exception;
+    }
+
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+}
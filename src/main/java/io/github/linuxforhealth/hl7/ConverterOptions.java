@@ -10,9 +10,11 @@ import org.hl7.fhir.r4.model.Bundle.BundleType;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 import com.google.common.base.Preconditions;
 import io.github.linuxforhealth.core.Constants;
+import io.github.linuxforhealth.hl7.message.BundleDeduplicator;
 
 /**
  * Converts HL7 message to FHIR bundle resource based on the customizable templates.
@@ -28,6 +30,7 @@ public class ConverterOptions {
     private boolean validateResource;
     private String zoneIdText;
     private HashMap<String, String> properties;
+    private BundleDeduplicator bundleDeduplicator;
 
     private ConverterOptions(Builder builder) {
         if (builder.bundleType != null) {
@@ -36,9 +39,11 @@ public class ConverterOptions {
             this.bundleType = Constants.DEFAULT_BUNDLE_TYPE;
         }
         this.zoneIdText = builder.zoneIdText;
-        this.properties = builder.properties;
+        // Copy so that later changes to the builder do not alter options already in use as cache keys
+        this.properties = new HashMap<>(builder.properties);
         this.prettyPrint = builder.prettyPrint;
         this.validateResource = builder.validateResource;
+        this.bundleDeduplicator = builder.bundleDeduplicator;
     }
 
     public static class Builder {
@@ -47,6 +52,7 @@ public class ConverterOptions {
         private boolean validateResource;
         private String zoneIdText;
         private HashMap<String, String> properties = new HashMap<>();
+        private BundleDeduplicator bundleDeduplicator;
 
         public Builder withBundleType(BundleType bundleType) {
             Preconditions.checkArgument(bundleType != null, "Bundle type cannot be null");
@@ -77,6 +83,19 @@ public class ConverterOptions {
             return this;
         }
 
+        /**
+         * Removes duplicate bundle entries with the deduplicator instead of the one configured by
+         * deduplicate.resources.
+         * 
+         * @param bundleDeduplicator Deduplicator to use
+         * @return Builder
+         */
+        public Builder withBundleDeduplicator(BundleDeduplicator bundleDeduplicator) {
+            Preconditions.checkArgument(bundleDeduplicator != null, "bundleDeduplicator cannot be null");
+            this.bundleDeduplicator = bundleDeduplicator;
+            return this;
+        }
+
         public ConverterOptions build() {
             return new ConverterOptions(this);
         }
@@ -117,4 +136,36 @@ public class ConverterOptions {
         return properties;
     }
 
-}
\ No newline at end of file
+    /**
+     * @return Deduplicator set with {@link Builder#withBundleDeduplicator(BundleDeduplicator)}, or null to use
+     *         the one configured by deduplicate.resources
+     */
+    public BundleDeduplicator getBundleDeduplicator() {
+        return bundleDeduplicator;
+    }
+
+    /**
+     * Two options are equal when they would produce the same message engine: same bundle type, pretty
+     * print, validation, zone id, run-time properties and bundle deduplicator.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ConverterOptions)) {
+            return false;
+        }
+        ConverterOptions other = (ConverterOptions) obj;
+        return prettyPrint == other.prettyPrint && validateResource == other.validateResource
+                && bundleType == other.bundleType && Objects.equals(zoneIdText, other.zoneIdText)
+                && Objects.equals(properties, other.properties) && bundleDeduplicator == other.bundleDeduplicator;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(bundleType, prettyPrint, validateResource, zoneIdText, properties,
+                System.identityHashCode(bundleDeduplicator));
+    }
+
+}
@@ -9,9 +9,30 @@ package io.github.linuxforhealth.hl7;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -21,28 +42,51 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.model.Message;
 import ca.uhn.hl7v2.util.Hl7InputStreamMessageStringIterator;
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
 import io.github.linuxforhealth.core.terminology.TerminologyLookup;
 import io.github.linuxforhealth.core.terminology.UrlLookup;
 import io.github.linuxforhealth.fhir.FHIRContext;
+import io.github.linuxforhealth.fhir.NdjsonBulkDataWriter;
+import io.github.linuxforhealth.hl7.message.BundleDeduplicator;
 import io.github.linuxforhealth.hl7.message.HL7MessageEngine;
 import io.github.linuxforhealth.hl7.message.HL7MessageModel;
+import io.github.linuxforhealth.hl7.message.TemplateSegmentUsage;
+import io.github.linuxforhealth.hl7.parsing.Er7MessageIndex;
 import io.github.linuxforhealth.hl7.parsing.HL7DataExtractor;
 import io.github.linuxforhealth.hl7.parsing.HL7HapiParser;
+import io.github.linuxforhealth.hl7.parsing.HL7HapiParserPool;
+import io.github.linuxforhealth.hl7.parsing.MessageStructureLogger;
+import io.github.linuxforhealth.hl7.parsing.MshHeader;
+import io.github.linuxforhealth.hl7.parsing.UnusedSegmentFilter;
 import io.github.linuxforhealth.hl7.resource.ResourceReader;
 
 /**
  * Converts HL7 message to FHIR bundle resource based on the customizable templates.
+ * One converter can be used by many threads at the same time; all conversions share its templates.
  *
  * @author pbhallam
  */
 public class HL7ToFHIRConverter {
-    private static HL7HapiParser hparser = new HL7HapiParser();
     private static final Logger LOGGER = LoggerFactory.getLogger(HL7ToFHIRConverter.class);
+    // Options differing only in run-time properties get their own engine, so the number kept is bounded
+    private static final int MAX_MESSAGE_ENGINES = 100;
     private Map<String, HL7MessageModel> messagetemplates = new HashMap<>();
+    // Message engines are immutable once built, so one engine is shared by all conversions using equal options.
+    private final LoadingCache<ConverterOptions, HL7MessageEngine> messageEngines = CacheBuilder.newBuilder()
+            .maximumSize(MAX_MESSAGE_ENGINES).build(CacheLoader.from(HL7ToFHIRConverter::createMessageEngine));
+    private final MessageStructureLogger structureLogger;
+    // Removes segments no template reads before parsing, by message type
+    private final Map<String, UnusedSegmentFilter> segmentFilters = new HashMap<>();
+    private final boolean er7Extraction;
 
     /**
      * Constructor initialized all the templates used for converting the HL7 to FHIR bundle resource.
@@ -55,11 +99,28 @@ public class HL7ToFHIRConverter {
             messagetemplates.putAll(ResourceReader.getInstance().getMessageTemplates());
             TerminologyLookup.init();
             UrlLookup.init();
+            ConverterConfiguration config = ConverterConfiguration.getInstance();
+            structureLogger = new MessageStructureLogger(config.getMessageStructureLogging(),
+                    config.getMessageStructureSampleRate());
+            if (config.isSkipUnusedSegments()) {
+                initSegmentFilters();
+            }
+            er7Extraction = config.isEr7Extraction();
         } catch (IllegalArgumentException e) {
             throw new IllegalStateException("Failure to initialize the templates for the converter.", e);
         }
     }
 
+    private void initSegmentFilters() {
+        TemplateSegmentUsage usage = new TemplateSegmentUsage();
+        for (Map.Entry<String, HL7MessageModel> template : messagetemplates.entrySet()) {
+            Set<String> usedSegments = usage.getReferencedSegments(template.getValue());
+            if (usedSegments != null) {
+                segmentFilters.put(template.getKey(), new UnusedSegmentFilter(usedSegments));
+            }
+        }
+    }
+
     /**
      * Converts the input HL7 file (.hl7) into FHIR bundle resource.
      * 
@@ -122,6 +183,39 @@ public class HL7ToFHIRConverter {
         return engine.getFHIRContext().encodeResourceToString(bundle);
     }
 
+    /**
+     * Converts the input HL7 message (String data) into FHIR bundle resource and writes its UTF-8 JSON
+     * representation directly to the output stream, without building an intermediate String. The stream is
+     * flushed but not closed.
+     * 
+     * @param hl7MessageData Message to convert
+     * @param options Options for conversion
+     * @param out Output stream the JSON representation of the FHIR {@link Bundle} resource is written to
+     * @throws IOException - if the output stream cannot be written
+     * @throws UnsupportedOperationException - if message type is not supported
+     */
+    public void convert(String hl7MessageData, ConverterOptions options, OutputStream out) throws IOException {
+        Preconditions.checkArgument(out != null, "Output stream cannot be null.");
+        HL7MessageEngine engine = getMessageEngine(options);
+        Bundle bundle = convertToBundle(hl7MessageData, options, engine);
+        engine.getFHIRContext().encodeResourceToStream(bundle, out);
+    }
+
+    /**
+     * Converts the input HL7 message (String data) into FHIR bundle resource.
+     * 
+     * @param hl7MessageData Message to convert
+     * @param options Options for conversion
+     * 
+     * @return UTF-8 encoded JSON representation of FHIR {@link Bundle} resource.
+     * @throws UnsupportedOperationException - if message type is not supported
+     */
+    public byte[] convertToBytes(String hl7MessageData, ConverterOptions options) {
+        HL7MessageEngine engine = getMessageEngine(options);
+        Bundle bundle = convertToBundle(hl7MessageData, options, engine);
+        return engine.getFHIRContext().encodeResourceToBytes(bundle);
+    }
+
     /**
      * Converts the input HL7 message (String data) into FHIR bundle resource.
      *
@@ -138,65 +232,342 @@ public class HL7ToFHIRConverter {
             engine = getMessageEngine(options);
         }
 
+        // Reject message types without a template before parsing the message
+        MshHeader header = MshHeader.parse(hl7MessageData);
+        String scannedMessageType = header != null ? header.getMessageType() : null;
+        if (scannedMessageType != null && !isSupportedMessageType(scannedMessageType)) {
+            throw new UnsupportedOperationException("Message type not yet supported " + scannedMessageType);
+        }
 
-        Message hl7message = getHl7Message(hl7MessageData);
+        UnusedSegmentFilter segmentFilter = scannedMessageType != null ? segmentFilters.get(scannedMessageType) : null;
+        String messageText = getHl7MessageText(hl7MessageData, segmentFilter, header);
+        Message hl7message = parse(messageText);
         if (hl7message != null) {
-            String messageType = HL7DataExtractor.getMessageType(hl7message);
-            HL7MessageModel hl7MessageTemplateModel = messagetemplates.get(messageType);
-            if (hl7MessageTemplateModel != null) {
-                return hl7MessageTemplateModel.convert(hl7message, engine);
-            } else {
-                throw new UnsupportedOperationException("Message type not yet supported " + messageType);
+            Bundle bundle = null;
+            try {
+                String messageType = HL7DataExtractor.getMessageType(hl7message);
+                HL7MessageModel hl7MessageTemplateModel = messagetemplates.get(messageType);
+                if (hl7MessageTemplateModel != null) {
+                    Er7MessageIndex index = er7Extraction ? Er7MessageIndex.of(messageText) : null;
+                    bundle = hl7MessageTemplateModel.convert(hl7message, index, engine);
+                    return bundle;
+                } else {
+                    throw new UnsupportedOperationException("Message type not yet supported " + messageType);
+                }
+            } finally {
+                structureLogger.log(hl7message, bundle == null);
             }
         } else {
             throw new IllegalArgumentException("Parsed HL7 message was null.");
         }
     }
 
-    private HL7MessageEngine getMessageEngine(ConverterOptions options){
+    /**
+     * Checks whether messages of the given type are converted, for example to route messages scanned with
+     * {@link MshHeader} before converting them.
+     *
+     * @param messageType Message type such as ADT_A01, see {@link MshHeader#getMessageType()}
+     * @return True if a message template exists for the message type
+     */
+    public boolean isSupportedMessageType(String messageType) {
+        return messageType != null && messagetemplates.containsKey(messageType);
+    }
+
+    /**
+     * Converts independent HL7 messages into FHIR bundle resources in parallel on the common
+     * {@link ForkJoinPool}.
+     *
+     * @param hl7Messages Messages to convert, one HL7 message per entry
+     * @param options Options for conversion
+     * @return List of {@link ConversionResult} holding the JSON representation of each FHIR {@link Bundle}
+     *         or the exception encountered, in the same order as the input messages.
+     */
+    public List<ConversionResult<String>> convertAll(Collection<String> hl7Messages, ConverterOptions options) {
+        return convertAll(hl7Messages, options, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Converts independent HL7 messages into FHIR bundle resources in parallel on the given executor. A
+     * failure converting one message is captured in its result and does not stop the rest of the batch.
+     *
+     * @param hl7Messages Messages to convert, one HL7 message per entry
+     * @param options Options for conversion
+     * @param executor Executor, for example a {@link ForkJoinPool}, to run the conversions on
+     * @return List of {@link ConversionResult} holding the JSON representation of each FHIR {@link Bundle}
+     *         or the exception encountered, in the same order as the input messages.
+     */
+    public List<ConversionResult<String>> convertAll(Collection<String> hl7Messages, ConverterOptions options,
+            ExecutorService executor) {
+        HL7MessageEngine engine = getMessageEngine(options);
+        return convertAll(hl7Messages, executor,
+                message -> engine.getFHIRContext().encodeResourceToString(convertToBundle(message, options, engine)));
+    }
+
+    /**
+     * Converts independent HL7 messages into FHIR bundle resources in parallel on the common
+     * {@link ForkJoinPool}.
+     *
+     * @param hl7Messages Messages to convert, one HL7 message per entry
+     * @param options Options for conversion
+     * @return List of {@link ConversionResult} holding each FHIR {@link Bundle} or the exception
+     *         encountered, in the same order as the input messages.
+     */
+    public List<ConversionResult<Bundle>> convertAllToBundles(Collection<String> hl7Messages,
+            ConverterOptions options) {
+        return convertAllToBundles(hl7Messages, options, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Converts independent HL7 messages into FHIR bundle resources in parallel on the given executor. A
+     * failure converting one message is captured in its result and does not stop the rest of the batch.
+     *
+     * @param hl7Messages Messages to convert, one HL7 message per entry
+     * @param options Options for conversion
+     * @param executor Executor, for example a {@link ForkJoinPool}, to run the conversions on
+     * @return List of {@link ConversionResult} holding each FHIR {@link Bundle} or the exception
+     *         encountered, in the same order as the input messages.
+     */
+    public List<ConversionResult<Bundle>> convertAllToBundles(Collection<String> hl7Messages,
+            ConverterOptions options, ExecutorService executor) {
+        HL7MessageEngine engine = getMessageEngine(options);
+        return convertAll(hl7Messages, executor, message -> convertToBundle(message, options, engine));
+    }
+
+    private static <T> List<ConversionResult<T>> convertAll(Collection<String> hl7Messages,
+            ExecutorService executor, Function<String, T> conversion) {
+        Preconditions.checkArgument(hl7Messages != null, "Input HL7 messages cannot be null.");
+        Preconditions.checkArgument(executor != null, "executor cannot be null.");
+
+        List<Callable<ConversionResult<T>>> tasks = new ArrayList<>(hl7Messages.size());
+        int index = 0;
+        for (String message : hl7Messages) {
+            final int messageIndex = index++;
+            tasks.add(() -> convertOne(messageIndex, message, conversion));
+        }
+
+        List<ConversionResult<T>> results = new ArrayList<>(tasks.size());
+        try {
+            List<Future<ConversionResult<T>>> futures = executor.invokeAll(tasks);
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(ConversionResult.failure(i,
+                            new IllegalStateException("Failure converting message.", e.getCause())));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while converting messages.", e);
+        }
+        return results;
+    }
+
+    private static <T> ConversionResult<T> convertOne(int index, String message, Function<String, T> conversion) {
+        try {
+            T value = conversion.apply(message);
+            if (value == null) {
+                return ConversionResult.failure(index,
+                        new IllegalStateException("Conversion did not produce a FHIR bundle."));
+            }
+            return ConversionResult.success(index, value);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failure converting message at index {}", index);
+            LOGGER.debug("Failure converting message at index {}", index, e);
+            return ConversionResult.failure(index, e);
+        }
+    }
+
+    /**
+     * Lazily converts every HL7 message read from the input stream into a FHIR bundle resource. Messages
+     * are read and converted one at a time as the returned stream is consumed, so memory use does not grow
+     * with the size of the input. The input stream is read as UTF-8 and is not closed by this method.
+     *
+     * @param hl7Messages Input stream containing one or more HL7 messages
+     * @param options Options for conversion
+     * @return Sequential {@link Stream} of {@link ConversionResult} holding the JSON representation of each
+     *         FHIR {@link Bundle} or the exception encountered, in input order.
+     */
+    public Stream<ConversionResult<String>> convertStream(InputStream hl7Messages, ConverterOptions options) {
+        Preconditions.checkArgument(hl7Messages != null, "Input HL7 message stream cannot be null.");
+        return convertStream(new InputStreamReader(hl7Messages, StandardCharsets.UTF_8), options);
+    }
+
+    /**
+     * Lazily converts every HL7 message in the file into a FHIR bundle resource. The file is opened when this
+     * method is called and closed when the returned stream is closed, so the stream should be used in a
+     * try-with-resources block.
+     *
+     * @param hl7MessageFile File containing one or more HL7 messages, read as UTF-8
+     * @param options Options for conversion
+     * @return Sequential {@link Stream} of {@link ConversionResult} holding the JSON representation of each
+     *         FHIR {@link Bundle} or the exception encountered, in input order.
+     * @throws IOException - if message file cannot be opened
+     */
+    public Stream<ConversionResult<String>> convertStream(Path hl7MessageFile, ConverterOptions options)
+            throws IOException {
+        Preconditions.checkArgument(hl7MessageFile != null, "Input HL7 message file cannot be null.");
+        Reader reader = Files.newBufferedReader(hl7MessageFile, StandardCharsets.UTF_8);
+        return convertStream(reader, options).onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failure to close HL7 message file.", e);
+            }
+        });
+    }
+
+    /**
+     * Lazily converts every HL7 message read from the reader into a FHIR bundle resource. The reader is not
+     * closed by this method.
+     *
+     * @param hl7Messages Reader containing one or more HL7 messages
+     * @param options Options for conversion
+     * @return Sequential {@link Stream} of {@link ConversionResult} holding the JSON representation of each
+     *         FHIR {@link Bundle} or the exception encountered, in input order.
+     */
+    public Stream<ConversionResult<String>> convertStream(Reader hl7Messages, ConverterOptions options) {
+        HL7MessageEngine engine = getMessageEngine(options);
+        return convertStream(hl7Messages,
+                message -> engine.getFHIRContext().encodeResourceToString(convertToBundle(message, options, engine)));
+    }
+
+    /**
+     * Lazily converts every HL7 message read from the reader into a FHIR bundle resource. The reader is not
+     * closed by this method.
+     *
+     * @param hl7Messages Reader containing one or more HL7 messages
+     * @param options Options for conversion
+     * @return Sequential {@link Stream} of {@link ConversionResult} holding each FHIR {@link Bundle} or the
+     *         exception encountered, in input order.
+     */
+    public Stream<ConversionResult<Bundle>> convertStreamToBundles(Reader hl7Messages, ConverterOptions options) {
+        HL7MessageEngine engine = getMessageEngine(options);
+        return convertStream(hl7Messages, message -> convertToBundle(message, options, engine));
+    }
+
+    /**
+     * Converts the input HL7 message and writes the resources of the FHIR bundle to the NDJSON bulk data
+     * writer, one file per resource type, without encoding the bundle itself.
+     *
+     * @param hl7MessageData Message to convert
+     * @param options Options for conversion
+     * @param writer Bulk data writer the resources are written to, not closed by this method
+     * @throws IOException - if the resources cannot be written
+     * @throws UnsupportedOperationException - if message type is not supported
+     */
+    public void convertToBulkData(String hl7MessageData, ConverterOptions options, NdjsonBulkDataWriter writer)
+            throws IOException {
+        Preconditions.checkArgument(writer != null, "writer cannot be null.");
+        writer.write(convertToBundle(hl7MessageData, options, null));
+    }
+
+    /**
+     * Converts every HL7 message read from the reader and writes the resources of each FHIR bundle to the
+     * NDJSON bulk data writer, one file per resource type. Messages are converted one at a time as they are
+     * read; a message that fails to convert is skipped and reported in the returned list. The reader and the
+     * writer are not closed by this method.
+     *
+     * @param hl7Messages Reader containing one or more HL7 messages
+     * @param options Options for conversion
+     * @param writer Bulk data writer the resources are written to
+     * @return List of {@link ConversionResult} for the messages that failed to convert, in input order
+     * @throws IOException - if the resources cannot be written
+     */
+    public List<ConversionResult<Bundle>> convertToBulkData(Reader hl7Messages, ConverterOptions options,
+            NdjsonBulkDataWriter writer) throws IOException {
+        Preconditions.checkArgument(writer != null, "writer cannot be null.");
+        List<ConversionResult<Bundle>> failures = new ArrayList<>();
+        try (Stream<ConversionResult<Bundle>> results = convertStreamToBundles(hl7Messages, options)) {
+            Iterator<ConversionResult<Bundle>> iterator = results.iterator();
+            while (iterator.hasNext()) {
+                ConversionResult<Bundle> result = iterator.next();
+                if (result.isSuccess()) {
+                    writer.write(result.getValue());
+                } else {
+                    failures.add(result);
+                }
+            }
+        }
+        return failures;
+    }
+
+    private static <T> Stream<ConversionResult<T>> convertStream(Reader hl7Messages,
+            Function<String, T> conversion) {
+        Preconditions.checkArgument(hl7Messages != null, "Input HL7 message reader cannot be null.");
+        Hl7InputStreamMessageStringIterator messages = new Hl7InputStreamMessageStringIterator(hl7Messages);
+        Iterator<ConversionResult<T>> results = new Iterator<ConversionResult<T>>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return messages.hasNext();
+            }
+
+            @Override
+            public ConversionResult<T> next() {
+                return convertOne(index++, messages.next(), conversion);
+            }
+        };
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Returns the message engine used for conversions with the options. Conversions with equal options share
+     * one engine.
+     * 
+     * @param options Options for conversion
+     * @return {@link HL7MessageEngine}
+     */
+    public HL7MessageEngine getMessageEngine(ConverterOptions options) {
         Preconditions.checkArgument(options != null, "options cannot be null.");
-        FHIRContext context = new FHIRContext(options.isPrettyPrint(), options.isValidateResource(), options.getProperties(), options.getZoneIdText());
+        try {
+            return messageEngines.getUnchecked(options);
+        } catch (UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
 
-        return new HL7MessageEngine(context, options.getBundleType());
+    private static HL7MessageEngine createMessageEngine(ConverterOptions options) {
+        FHIRContext context = new FHIRContext(options.isPrettyPrint(), options.isValidateResource(),
+                options.getProperties(), options.getZoneIdText());
+        BundleDeduplicator deduplicator = options.getBundleDeduplicator() != null ? options.getBundleDeduplicator()
+                : BundleDeduplicator.getInstance();
+        return new HL7MessageEngine(context, options.getBundleType(), deduplicator);
     }
 
-    private static Message getHl7Message(String data) {
-        Message hl7message = null;
+    private static String getHl7MessageText(String data, UnusedSegmentFilter segmentFilter, MshHeader header) {
+        String message = null;
         try (InputStream ins = IOUtils.toInputStream(data, StandardCharsets.UTF_8)) {
             Hl7InputStreamMessageStringIterator iterator = new Hl7InputStreamMessageStringIterator(ins);
             // only supports single message conversion.
             if (iterator.hasNext()) {
-
-                hl7message = hparser.getParser().parse(iterator.next());
+                message = iterator.next();
+                if (segmentFilter != null) {
+                    message = segmentFilter.filter(message, header);
+                }
+                if (iterator.hasNext()) {
+                    LOGGER.warn("Input contains more than one HL7 message, only the first message is converted. Use convertStream for multiple messages.");
+                }
             }
-        } catch (HL7Exception e) {
-            throw new IllegalArgumentException("Cannot parse the message.", e);
         } catch (IOException ioe) {
             throw new IllegalArgumentException("IOException encountered.", ioe);
         }
 
+        return message;
+    }
+
+    private static Message parse(String message) {
+        if (message == null) {
+            return null;
+        }
         try {
-            if (hl7message != null) {
-                String messageStructureInfo = hl7message.printStructure();
-                StringBuilder output = new StringBuilder();
-                String[] messageStructureInfoLines = messageStructureInfo.split(System.getProperty("line.separator"));
-                for (String line : messageStructureInfoLines) {
-                    if (!line.contains("|")) {
-                        output.append(line);
-                    } else {
-                        int firstDash = line.indexOf("-");
-                        output.append(line.substring(0, firstDash + 5));
-                    }
-                    output.append("\n");
-                }
-                if (output.length() > 0) {
-                    LOGGER.info("HL7_MESSAGE_STRUCTURE=\n{}", output);
-                }
-            }
+            return HL7HapiParserPool.getInstance().parse(message);
         } catch (HL7Exception e) {
-            throw new IllegalArgumentException("Error printing message structure.", e);
+            throw new IllegalArgumentException("Cannot parse the message.", e);
         }
-        return hl7message;
     }
 
     private static void close(HL7HapiParser hparser) {
@@ -15,7 +15,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.Expression;
 import io.github.linuxforhealth.api.InputDataExtractor;
@@ -28,6 +27,7 @@ import io.github.linuxforhealth.core.exception.DataExtractionException;
 import io.github.linuxforhealth.core.exception.RequiredConstraintFailureException;
 import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
+import io.github.linuxforhealth.core.expression.ScopedContextMap;
 import io.github.linuxforhealth.core.expression.VariableUtils;
 import io.github.linuxforhealth.hl7.expression.specification.SpecificationUtil;
 
@@ -36,9 +36,8 @@ public abstract class AbstractExpression implements Expression {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractExpression.class);
 
-    private ExpressionAttributes attr;
-    private String originalContext;
-    private boolean conditionSatisfiedState;
+    // Expressions are shared by all conversions, so all state of one evaluation is kept in its EvaluationFrame
+    private final ExpressionAttributes attr;
 
     public AbstractExpression(ExpressionAttributes attr) {
         this.attr = attr;
@@ -93,23 +92,24 @@ public abstract class AbstractExpression implements Expression {
         Preconditions.checkArgument(contextValues != null, "contextValues cannot be null");
         Preconditions.checkArgument(baseValue != null, "baseValue cannot be null");
         EvaluationResult result;
+        EvaluationFrame frame = new EvaluationFrame(MDC.get(RESOURCE));
         try {
-            setLoggingContext();
+            setLoggingContext(frame);
 
             LOGGER.debug("Started Evaluating with baseValue {} expression {} ", baseValue, this);
 
-            Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
+            ScopedContextMap localContextValues = ScopedContextMap.of(contextValues);
 
             if (!baseValue.isEmpty()) {
-                localContextValues.put(baseValue.getIdentifier(), baseValue);
-                localContextValues.put(Constants.BASE_VALUE_NAME, baseValue);
+                localContextValues = localContextValues.with(baseValue.getIdentifier(), baseValue)
+                        .with(Constants.BASE_VALUE_NAME, baseValue);
             }
 
-            result = evaluateValueOfExpression(dataSource, localContextValues, baseValue);
+            result = evaluateValueOfExpression(dataSource, localContextValues, baseValue, frame);
 
             LOGGER.debug("Completed Evaluating returned value  {} ----  for  expression {} ", result, this);
 
-            if (this.conditionSatisfiedState && this.isRequired()
+            if (frame.conditionSatisfied && this.isRequired()
                     && (result == null || result.isEmpty())) {
 
                 String stringRep = this.toString();
@@ -124,21 +124,20 @@ public abstract class AbstractExpression implements Expression {
                     this.attr.getName());
             return null;
         } finally {
-            resetLoggingContext();
+            resetLoggingContext(frame);
         }
     }
 
-    private void setLoggingContext() {
-        originalContext = MDC.get(RESOURCE);
-        MDC.put(RESOURCE, originalContext + "-> Field:" + this.getExpressionAttr().getName());
+    private void setLoggingContext(EvaluationFrame frame) {
+        MDC.put(RESOURCE, frame.originalContext + "-> Field:" + this.getExpressionAttr().getName());
     }
 
-    private void resetLoggingContext() {
-        MDC.put(RESOURCE, originalContext);
+    private static void resetLoggingContext(EvaluationFrame frame) {
+        MDC.put(RESOURCE, frame.originalContext);
     }
 
     private EvaluationResult evaluateValueOfExpression(InputDataExtractor dataSource,
-            Map<String, EvaluationResult> localContextValues, EvaluationResult baseinputValue) {
+            ScopedContextMap contextValues, EvaluationResult baseinputValue, EvaluationFrame frame) {
         /**
          * Steps:
          * <ul>
@@ -154,8 +153,10 @@ public abstract class AbstractExpression implements Expression {
          */
 
         // Add constants to the context map
-        this.attr.getConstants().entrySet().forEach(e -> localContextValues.put(e.getKey(),
+        Map<String, EvaluationResult> constants = new HashMap<>();
+        this.attr.getConstants().entrySet().forEach(e -> constants.put(e.getKey(),
                 EvaluationResultFactory.getEvaluationResult(e.getValue())));
+        ScopedContextMap localContextValues = contextValues.withAll(constants);
 
         List<Object> result = new ArrayList<>();
         List<ResourceValue> additionalresourcesresult = new ArrayList<>();
@@ -164,12 +165,11 @@ public abstract class AbstractExpression implements Expression {
 
         if (!baseSpecvalues.isEmpty()) {
             for (Object o : baseSpecvalues) {
-                Map<String, EvaluationResult> localContextValuesSpec = new HashMap<>(localContextValues);
-                localContextValuesSpec.put(Constants.BASE_VALUE_NAME,
+                ScopedContextMap localContextValuesSpec = localContextValues.with(Constants.BASE_VALUE_NAME,
                         EvaluationResultFactory.getEvaluationResult(o));
 
                 EvaluationResult gen = generateValue(dataSource, localContextValuesSpec,
-                        EvaluationResultFactory.getEvaluationResult(o));
+                        EvaluationResultFactory.getEvaluationResult(o), frame);
 
                 if (gen != null && gen.getValue() != null && !gen.isEmpty()) {
                     if (gen.getValue() instanceof List) {
@@ -186,7 +186,7 @@ public abstract class AbstractExpression implements Expression {
 
             }
         } else {
-            EvaluationResult gen = generateValue(dataSource, localContextValues, baseinputValue);
+            EvaluationResult gen = generateValue(dataSource, localContextValues, baseinputValue, frame);
             if (gen != null && gen.getValue() != null && !gen.isEmpty()) {
                 if (gen.getValue() instanceof List) {
                     result.addAll(gen.getValue());
@@ -226,7 +226,7 @@ public abstract class AbstractExpression implements Expression {
             specValues = baseinputValue;
         } else {
             specValues = SpecificationUtil.extractMultipleValuesForSpec(specs, dataSource,
-                    ImmutableMap.copyOf(contextValues));
+                    ScopedContextMap.of(contextValues));
         }
 
         if (specValues != null && specValues.getValue() instanceof List) {
@@ -239,32 +239,32 @@ public abstract class AbstractExpression implements Expression {
     }
 
     private EvaluationResult generateValue(InputDataExtractor dataSource,
-            Map<String, EvaluationResult> contextValues, EvaluationResult baseValue) {
+            Map<String, EvaluationResult> contextValues, EvaluationResult baseValue, EvaluationFrame frame) {
 
         // resolve variables
-        Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
+        ScopedContextMap localContextValues = ScopedContextMap.of(contextValues);
         if (baseValue != null && baseValue.getValue() != null) {
-            localContextValues.put(DataTypeUtil.getDataType(baseValue.getValue()), baseValue);
+            localContextValues = localContextValues.with(DataTypeUtil.getDataType(baseValue.getValue()), baseValue);
         }
-        localContextValues.putAll(
-                resolveVariables(this.getVariables(), ImmutableMap.copyOf(localContextValues), dataSource));
+        localContextValues = localContextValues
+                .withAll(resolveVariables(this.getVariables(), localContextValues, dataSource));
 
         if (this.isConditionSatisfied(localContextValues)) {
-            conditionSatisfiedState = true;
-            return evaluateExpression(dataSource, ImmutableMap.copyOf(localContextValues), baseValue);
+            frame.conditionSatisfied = true;
+            return evaluateExpression(dataSource, localContextValues, baseValue);
 
         }
         return null;
     }
 
     private static Map<String, EvaluationResult> resolveVariables(List<Variable> variables,
-            Map<String, EvaluationResult> contextValues, InputDataExtractor dataSource) {
+            ScopedContextMap contextValues, InputDataExtractor dataSource) {
 
         Map<String, EvaluationResult> localVariables = new HashMap<>();
 
         for (Variable var : variables) {
             try {
-                EvaluationResult value = var.extractVariableValue(ImmutableMap.copyOf(contextValues), dataSource);
+                EvaluationResult value = var.extractVariableValue(contextValues, dataSource);
                 if (value != null) {
 
                     localVariables.put(VariableUtils.getVarName(var.getVariableName()),
@@ -313,4 +313,19 @@ public abstract class AbstractExpression implements Expression {
         return new ToStringBuilder(this).append("Expression Attributes", this.attr).build();
     }
 
+    /**
+     * State of one evaluation of the expression.
+     */
+    private static final class EvaluationFrame {
+        // Logging context of the caller, restored when the evaluation completes
+        private final String originalContext;
+        // Set when the condition is satisfied for at least one base value, required expressions must then
+        // produce a value
+        private boolean conditionSatisfied;
+
+        private EvaluationFrame(String originalContext) {
+            this.originalContext = originalContext;
+        }
+    }
+
 }
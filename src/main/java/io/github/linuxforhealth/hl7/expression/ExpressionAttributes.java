@@ -50,7 +50,7 @@ public class ExpressionAttributes {
     private final String valueOf;
     private final boolean useGroup;
     private ExpressionType expressionType;
-    private String toString;
+    private volatile String toString;
     private final List<ExpressionAttributes> expressions;
     private final Map<String, ExpressionAttributes> expressionsMap;
     private final boolean isEvaluateLater;
@@ -228,11 +228,14 @@ public class ExpressionAttributes {
 
     @Override
     public String toString() {
-        if (this.toString == null) {
-            this.toString = ReflectionToStringBuilder.toString(this, ToStringStyle.NO_CLASS_NAME_STYLE,
-                    false, false, true, null);
-        }
-        return this.toString;
+        String result = this.toString;
+        if (result == null) {
+            // The cached value is excluded so the result is the same when computed concurrently
+            result = new ReflectionToStringBuilder(this, ToStringStyle.NO_CLASS_NAME_STYLE, null, null, false,
+                    false, true).setExcludeFieldNames("toString").toString();
+            this.toString = result;
+        }
+        return result;
     }
 
     public boolean isEvaluateLater() {
@@ -36,7 +36,7 @@ public class Hl7Expression extends AbstractExpression {
   private static final Logger LOGGER = LoggerFactory.getLogger(Hl7Expression.class);
 
 
-  private List<Specification> valueof;
+  private final List<Specification> valueof;
 
   @JsonCreator
   public Hl7Expression(ExpressionAttributes expAttr) {
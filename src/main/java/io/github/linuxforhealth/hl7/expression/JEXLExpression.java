@@ -7,6 +7,7 @@ package io.github.linuxforhealth.hl7.expression;
 
 import java.util.HashMap;
 import java.util.Map;
+import org.apache.commons.jexl3.JexlExpression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.annotation.JsonCreator;
@@ -15,15 +16,20 @@ import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
 import io.github.linuxforhealth.api.Variable;
 import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
+import io.github.linuxforhealth.hl7.message.HL7MessageData;
 
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class JEXLExpression extends AbstractExpression {
   private static final Logger LOGGER = LoggerFactory.getLogger(JEXLExpression.class);
 
+  // Compiled when the template is loaded, so unsupported expressions fail then rather than on every evaluation
+  private final JexlExpression compiledExpression;
+
   @JsonCreator
   public JEXLExpression(ExpressionAttributes expAttr) {
     super(expAttr);
+    this.compiledExpression = HL7MessageData.getJexlEngine().compile(expAttr.getValueOf());
 
   }
 
@@ -40,7 +46,7 @@ public class JEXLExpression extends AbstractExpression {
     }
     LOGGER.info("Evaluating expression");
     LOGGER.debug("Evaluating value of {}", this.getExpressionAttr().getValueOf());
-    return dataSource.evaluateJexlExpression(this.getExpressionAttr().getValueOf(), contextValues);
+    return dataSource.evaluateJexlExpression(compiledExpression, contextValues);
   }
 
 
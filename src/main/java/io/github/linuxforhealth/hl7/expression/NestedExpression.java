@@ -7,6 +7,7 @@ package io.github.linuxforhealth.hl7.expression;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,7 +36,7 @@ import io.github.linuxforhealth.hl7.util.ExpressionUtility;
 public class NestedExpression extends AbstractExpression {
   private static final Logger LOGGER = LoggerFactory.getLogger(NestedExpression.class);
 
-  private Map<String, Expression> childexpressions;
+  private final Map<String, Expression> childexpressions;
   private boolean generateMap;
 
   public NestedExpression(ExpressionAttributes attr) {
@@ -67,6 +68,13 @@ public class NestedExpression extends AbstractExpression {
         "childexpressions cannot be null or empty");
   }
 
+  /**
+   * @return Child expressions, by key
+   */
+  public Map<String, Expression> getChildExpressions() {
+    return Collections.unmodifiableMap(childexpressions);
+  }
+
   @Override
   protected EvaluationResult evaluateExpression(InputDataExtractor dataSource,
       Map<String, EvaluationResult> contextValues, EvaluationResult baseValue) {
@@ -6,20 +6,30 @@
 package io.github.linuxforhealth.hl7.expression;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Segment;
+import ca.uhn.hl7v2.model.Type;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
 import io.github.linuxforhealth.api.ResourceValue;
+import io.github.linuxforhealth.core.Constants;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
+import io.github.linuxforhealth.core.expression.ScopedContextMap;
 import io.github.linuxforhealth.core.resource.ResourceResult;
+import io.github.linuxforhealth.hl7.message.HL7MessageData;
+import io.github.linuxforhealth.hl7.message.TemplateSegmentUsage;
 import io.github.linuxforhealth.hl7.resource.HL7DataBasedResourceModel;
 import io.github.linuxforhealth.hl7.resource.ResourceReader;
 
@@ -27,6 +37,10 @@ import io.github.linuxforhealth.hl7.resource.ResourceReader;
  * Represent a expression that represents resolving a json template and creating a reference data
  * type.
  * 
+ * Within a message, the result is cached by the referenced template, the content of the base value and
+ * the values of every context variable the referenced templates can read. A practitioner or organization
+ * referenced again with the same data is built once and referenced by the same id.
+ * 
  *
  * @author {user}
  */
@@ -35,11 +49,19 @@ public class ReferenceExpression extends AbstractExpression {
 
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ReferenceExpression.class);
-
-  private HL7DataBasedResourceModel data;
-  private HL7DataBasedResourceModel referenceModel = (HL7DataBasedResourceModel) ResourceReader
-      .getInstance().generateResourceModel("datatype/Reference");
-  private String reference;
+  // Template that builds the reference to the referenced resource
+  public static final String REFERENCE_TEMPLATE = "datatype/Reference";
+  private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+  // A fuzzy variable reads every variable whose name starts with its name
+  private static final Pattern FUZZY_VARIABLE = Pattern.compile("\\$[A-Za-z0-9_]+\\?");
+  private static final Object MISSING = new Object();
+
+  private final HL7DataBasedResourceModel data;
+  private final HL7DataBasedResourceModel referenceModel = (HL7DataBasedResourceModel) ResourceReader
+      .getInstance().generateResourceModel(REFERENCE_TEMPLATE);
+  private final String reference;
+  // Context keys the referenced templates can read, or null if the result cannot be cached
+  private final String[] contextKeys;
 
   @JsonCreator
   public ReferenceExpression(ExpressionAttributes expAttr) {
@@ -49,6 +71,34 @@ public class ReferenceExpression extends AbstractExpression {
     this.data = (HL7DataBasedResourceModel) ResourceReader.getInstance()
         .generateResourceModel(this.reference);
     Preconditions.checkState(this.data != null, "Resource reference model cannot be null");
+    this.contextKeys = findContextKeys(this.reference);
+  }
+
+
+
+  /**
+   * Every identifier in the referenced templates, and in the templates they use, can be the name of a
+   * context variable the evaluation reads, so all are part of the cache key.
+   */
+  private static String[] findContextKeys(String reference) {
+    List<String> contents =
+        new TemplateSegmentUsage().getReachableContents(Arrays.asList(reference, REFERENCE_TEMPLATE));
+    if (contents == null) {
+      return null;
+    }
+    Set<String> keys = new TreeSet<>(
+        Arrays.asList(Constants.GROUP_ID, Constants.USE_GROUP, Constants.BASE_VALUE_NAME, "KEY_NAME_SUFFIX"));
+    for (String content : contents) {
+      if (FUZZY_VARIABLE.matcher(content).find()) {
+        LOGGER.debug("Reference {} reads fuzzy variables, its results are not cached", reference);
+        return null;
+      }
+      Matcher identifiers = IDENTIFIER.matcher(content);
+      while (identifiers.find()) {
+        keys.add(identifiers.group());
+      }
+    }
+    return keys.toArray(new String[0]);
   }
 
 
@@ -59,6 +109,58 @@ public class ReferenceExpression extends AbstractExpression {
     Preconditions.checkArgument(dataSource != null, "dataSource cannot be null");
     Preconditions.checkArgument(contextValues != null, "contextValues cannot be null");
     LOGGER.debug("Evaluating expression {}", this.reference);
+    if (this.contextKeys != null && dataSource instanceof HL7MessageData) {
+      return ((HL7MessageData) dataSource).getReference(getCacheKey(contextValues, baseValue),
+          () -> evaluateReference(dataSource, contextValues, baseValue));
+    }
+    return evaluateReference(dataSource, contextValues, baseValue);
+  }
+
+
+
+  private List<Object> getCacheKey(Map<String, EvaluationResult> contextValues,
+      EvaluationResult baseValue) {
+    List<Object> key = new ArrayList<>(this.contextKeys.length + 2);
+    key.add(this.reference);
+    key.add(baseValue != null ? getContent(baseValue.getValue()) : MISSING);
+    for (String contextKey : this.contextKeys) {
+      EvaluationResult value = contextValues.get(contextKey);
+      key.add(value != null ? getContent(value.getValue()) : MISSING);
+    }
+    return key;
+  }
+
+
+
+  /**
+   * HL7 structures and types are compared by their encoded content, so the same data read from different
+   * segments gives the same key. Other values are compared with equals.
+   */
+  private static Object getContent(Object value) {
+    try {
+      if (value instanceof Type) {
+        return Arrays.asList(value.getClass(), ((Type) value).encode());
+      } else if (value instanceof Segment) {
+        return Arrays.asList(value.getClass(), ((Segment) value).encode());
+      }
+    } catch (HL7Exception e) {
+      LOGGER.debug("Cannot encode value of {}, comparing it by identity", value.getClass(), e);
+      return value;
+    }
+    if (value instanceof List) {
+      List<Object> contents = new ArrayList<>();
+      for (Object element : (List<?>) value) {
+        contents.add(getContent(element));
+      }
+      return contents;
+    }
+    return value;
+  }
+
+
+
+  private EvaluationResult evaluateReference(InputDataExtractor dataSource,
+      Map<String, EvaluationResult> contextValues, EvaluationResult baseValue) {
     EvaluationResult resourceReferenceResult = null;
     // Evaluate the resource first and add it to the list of additional resources generated
     ResourceResult primaryResourceResult = evaluateResource(dataSource, contextValues, baseValue);
@@ -72,10 +174,8 @@ public class ReferenceExpression extends AbstractExpression {
       EvaluationResult genBaseValue = EvaluationResultFactory
           .getEvaluationResult(primaryResourceResult.getValue().getResource());
 
-      Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
-
       ResourceResult result = this.referenceModel.evaluate(dataSource,
-          ImmutableMap.copyOf(localContextValues), genBaseValue);
+          ScopedContextMap.of(contextValues), genBaseValue);
       if (result != null && result.getValue() != null) {
         ResourceValue resolvedvalues = result.getValue();
 
@@ -96,7 +196,7 @@ public class ReferenceExpression extends AbstractExpression {
   private ResourceResult evaluateResource(InputDataExtractor dataSource,
       Map<String, EvaluationResult> contextValues, EvaluationResult hl7SpecValue) {
     ResourceResult result =
-        this.data.evaluate(dataSource, ImmutableMap.copyOf(contextValues), hl7SpecValue);
+        this.data.evaluate(dataSource, ScopedContextMap.of(contextValues), hl7SpecValue);
     if (result != null && result.getValue() != null) {
       return result;
     }
@@ -11,11 +11,11 @@ import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
 import io.github.linuxforhealth.api.ResourceValue;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
+import io.github.linuxforhealth.core.expression.ScopedContextMap;
 import io.github.linuxforhealth.core.resource.ResourceResult;
 import io.github.linuxforhealth.hl7.resource.HL7DataBasedResourceModel;
 import io.github.linuxforhealth.hl7.resource.ResourceReader;
@@ -32,8 +32,8 @@ public class ResourceExpression extends AbstractExpression {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ResourceExpression.class);
 
-  private HL7DataBasedResourceModel data;
-  private String resourceToGenerate;
+  private final HL7DataBasedResourceModel data;
+  private final String resourceToGenerate;
 
 
 
@@ -58,7 +58,7 @@ public class ResourceExpression extends AbstractExpression {
     EvaluationResult evaluationResult = null;
 
     ResourceResult result =
-        this.data.evaluate(dataSource, ImmutableMap.copyOf(contextValues), baseValue);
+        this.data.evaluate(dataSource, ScopedContextMap.of(contextValues), baseValue);
     if (result != null && result.getValue() != null) {
       ResourceValue resolvedvalues = result.getValue();
 
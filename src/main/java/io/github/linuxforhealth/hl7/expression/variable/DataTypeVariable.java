@@ -45,7 +45,7 @@ public class DataTypeVariable extends SimpleVariable {
     public EvaluationResult extractVariableValue(Map<String, EvaluationResult> contextValues,
             InputDataExtractor dataSource) {
         EvaluationResult result;
-        if (!this.getSpec().isEmpty()) {
+        if (hasSpec()) {
             result = getValueFromSpecs(contextValues, dataSource);
         } else {
             result = null;
@@ -5,13 +5,16 @@
  */
 package io.github.linuxforhealth.hl7.expression.variable;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.jexl3.JexlExpression;
+
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
 import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
+import io.github.linuxforhealth.core.expression.ScopedContextMap;
+import io.github.linuxforhealth.hl7.message.HL7MessageData;
 
 /**
  * Defines Variable object that can be used during the expression evaluation.
@@ -21,7 +24,9 @@ import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
  */
 public class ExpressionVariable extends SimpleVariable {
 
-    private String expression;
+    private final String expression;
+    // Compiled when the template is loaded, null if the variable has no expression
+    private final JexlExpression compiledExpression;
 
     /**
      * Constructor for Variable with default type: Object
@@ -35,12 +40,26 @@ public class ExpressionVariable extends SimpleVariable {
             boolean extractMultiple) {
         super(name, spec, extractMultiple, false);
         this.expression = expression;
+        this.compiledExpression = compile(name, expression);
     }
 
     public ExpressionVariable(String name, String expression, List<String> spec,
             boolean extractMultiple, boolean retainEmpty) {
         super(name, spec, extractMultiple, false, retainEmpty);
         this.expression = expression;
+        this.compiledExpression = compile(name, expression);
+    }
+
+    // Fails when the template is loaded if the expression is not supported
+    private static JexlExpression compile(String name, String expression) {
+        if (expression == null) {
+            return null;
+        }
+        try {
+            return HL7MessageData.getJexlEngine().compile(expression);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cannot compile expression for variable " + name, e);
+        }
     }
 
     // resolve variable value
@@ -48,7 +67,7 @@ public class ExpressionVariable extends SimpleVariable {
     public EvaluationResult extractVariableValue(Map<String, EvaluationResult> contextValues,
             InputDataExtractor dataSource) {
         EvaluationResult result = null;
-        if (!this.getSpec().isEmpty()) {
+        if (hasSpec()) {
             result = getValueFromSpecs(contextValues, dataSource);
         }
         if (result == null) {
@@ -57,11 +76,12 @@ public class ExpressionVariable extends SimpleVariable {
 
         if (this.expression != null) {
             // resolve expression
-            Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
-
-            localContextValues.put(this.getName(), result);
+            Map<String, EvaluationResult> localContextValues = ScopedContextMap.of(contextValues)
+                    .with(this.getName(), result);
 
-            result = dataSource.evaluateJexlExpression(expression, localContextValues);
+            result = compiledExpression != null
+                    ? dataSource.evaluateJexlExpression(compiledExpression, localContextValues)
+                    : dataSource.evaluateJexlExpression(expression, localContextValues);
         }
         return result;
 
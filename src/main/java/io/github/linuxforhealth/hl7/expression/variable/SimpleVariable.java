@@ -8,7 +8,6 @@ package io.github.linuxforhealth.hl7.expression.variable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import com.google.common.collect.ImmutableMap;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
 import io.github.linuxforhealth.api.Specification;
@@ -28,11 +27,16 @@ import io.github.linuxforhealth.hl7.expression.specification.SpecificationParser
 public class SimpleVariable implements Variable {
   public static final String OBJECT_TYPE = Object.class.getSimpleName();
 
-  private String name;
-  private List<String> spec;
-  private boolean extractMultiple;
-  private boolean combineMultiple;
-  private boolean retainEmpty;
+  private final String name;
+  private final List<String> spec;
+  private final boolean extractMultiple;
+  private final boolean combineMultiple;
+  private final boolean retainEmpty;
+  // Parsed when the variable is created, in the order of spec. A $variable reference has no
+  // specification and is looked up in the context, by its key when the lookup does not depend on the
+  // context values.
+  private final Specification[] specifications;
+  private final String[] lookupNames;
 
 
   public SimpleVariable(String name, List<String> spec) {
@@ -51,6 +55,17 @@ public class SimpleVariable implements Variable {
     this.extractMultiple = extractMultiple;
     this.combineMultiple = combineMultiple;
     this.retainEmpty = retainEmpty;
+    this.specifications = new Specification[this.spec.size()];
+    this.lookupNames = new String[this.spec.size()];
+    for (int i = 0; i < this.spec.size(); i++) {
+      String specValue = this.spec.get(i);
+      if (VariableUtils.isVar(specValue)) {
+        lookupNames[i] = ContextValueUtils.getDirectLookupName(specValue, false);
+      } else {
+        specifications[i] =
+            SpecificationParser.parse(specValue, extractMultiple, false, retainEmpty);
+      }
+    }
   }
 
   @Override
@@ -67,6 +82,13 @@ public class SimpleVariable implements Variable {
     return name;
   }
 
+  /**
+   * @return true if the variable has at least one spec to extract its value from
+   */
+  protected boolean hasSpec() {
+    return !spec.isEmpty();
+  }
+
 
   // resolve variable value
 
@@ -114,25 +136,23 @@ public class SimpleVariable implements Variable {
   protected List<EvaluationResult> getValuesFromSpecs(Map<String, EvaluationResult> contextValues,
       InputDataExtractor dataSource, boolean fetchAll) {
     List<EvaluationResult> combineValue = new ArrayList<>();
-    for (String specValue : this.spec) {
+    for (int i = 0; i < specifications.length; i++) {
       EvaluationResult fetchedValue = null;
-      if (VariableUtils.isVar(specValue)) {
-        boolean fuzzyMatch = VariableUtils.isFuzzyMatch(specValue);
-        fetchedValue =
-            ContextValueUtils.getVariableValuesFromVariableContextMap(specValue,
-                ImmutableMap.copyOf(contextValues),
-                false, fuzzyMatch);
+      if (specifications[i] == null) {
+        if (lookupNames[i] != null) {
+          fetchedValue = contextValues.get(lookupNames[i]);
+        } else {
+          String specValue = this.spec.get(i);
+          fetchedValue = ContextValueUtils.getVariableValuesFromVariableContextMap(specValue,
+              contextValues, false, VariableUtils.isFuzzyMatch(specValue));
+        }
       } else {
-        EvaluationResult gen;
-        Specification spec =
-            SpecificationParser.parse(specValue, this.extractMultiple, false, this.retainEmpty);
-
-        gen = spec.extractValueForSpec(dataSource, contextValues);
+        EvaluationResult gen = specifications[i].extractValueForSpec(dataSource, contextValues);
 
         if (gen != null && !gen.isEmpty()) {
           fetchedValue = gen;
+        }
       }
-    }
       // break the loop and return
       if (fetchedValue != null) {
         combineValue.add(fetchedValue);
@@ -0,0 +1,134 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.message;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Bundle.BundleEntryComponent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
+
+/**
+ * Removes duplicate entries from a bundle in a single pass. Only entries of the configured resource types are
+ * deduplicated. Two entries are duplicates when the identity function of their resource type returns the same
+ * key; the default identity is the entry fullUrl, which for resources whose id is built from their data
+ * (Organization, Practitioner, Location, ...) means the same source data. Of a set of duplicates the last
+ * entry is kept. Entries without an identity are never removed.
+ * <p>
+ * Each call returns the number of entries it removed by resource type. A deduplicator keeps no state between
+ * calls, so one instance can be shared by concurrent conversions.
+ */
+public class BundleDeduplicator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BundleDeduplicator.class);
+
+    public static final Function<BundleEntryComponent, String> FULL_URL = BundleEntryComponent::getFullUrl;
+
+    private static BundleDeduplicator defaultDeduplicator;
+
+    private final Map<String, Function<BundleEntryComponent, String>> identities;
+
+    private BundleDeduplicator(Builder builder) {
+        this.identities = new HashMap<>(builder.identities);
+    }
+
+    public static class Builder {
+        private final Map<String, Function<BundleEntryComponent, String>> identities = new HashMap<>();
+
+        /**
+         * Deduplicates entries of the resource type by fullUrl.
+         *
+         * @param resourceType FHIR resource type, for example Organization
+         * @return Builder
+         */
+        public Builder withResourceType(String resourceType) {
+            return withResourceType(resourceType, FULL_URL);
+        }
+
+        /**
+         * Deduplicates entries of the resource type by the key returned by the identity function.
+         *
+         * @param resourceType FHIR resource type, for example Organization
+         * @param identity Returns the key identifying the entry, or null if the entry has none
+         * @return Builder
+         */
+        public Builder withResourceType(String resourceType, Function<BundleEntryComponent, String> identity) {
+            Preconditions.checkArgument(resourceType != null, "resourceType cannot be null");
+            Preconditions.checkArgument(identity != null, "identity cannot be null");
+            this.identities.put(resourceType, identity);
+            return this;
+        }
+
+        public BundleDeduplicator build() {
+            return new BundleDeduplicator(this);
+        }
+    }
+
+    /**
+     * Returns the deduplicator for the resource types configured in config.properties.
+     *
+     * @return {@link BundleDeduplicator}
+     */
+    public static synchronized BundleDeduplicator getInstance() {
+        if (defaultDeduplicator == null) {
+            Builder builder = new Builder();
+            ConverterConfiguration.getInstance().getDeduplicatedResources().forEach(builder::withResourceType);
+            defaultDeduplicator = builder.build();
+        }
+        return defaultDeduplicator;
+    }
+
+    /**
+     * Removes duplicate entries from the bundle.
+     *
+     * @param bundle Bundle to deduplicate, modified in place
+     * @return Number of entries removed, by resource type; empty if none was removed
+     */
+    public Map<String, Integer> deduplicate(Bundle bundle) {
+        Preconditions.checkArgument(bundle != null, "bundle cannot be null");
+        if (identities.isEmpty() || !bundle.hasEntry()) {
+            return Collections.emptyMap();
+        }
+        List<BundleEntryComponent> entries = bundle.getEntry();
+        Set<String> seen = new HashSet<>();
+        List<BundleEntryComponent> kept = new ArrayList<>(entries.size());
+        Map<String, Integer> removedCounts = new TreeMap<>();
+        // Walk backwards so that the last of a set of duplicates is the one kept
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            BundleEntryComponent entry = entries.get(i);
+            String resourceType = entry.hasResource() ? entry.getResource().fhirType() : null;
+            Function<BundleEntryComponent, String> identity = resourceType != null ? identities.get(resourceType)
+                    : null;
+            String key = identity != null ? identity.apply(entry) : null;
+            // Keys are qualified by resource type so different types never match
+            if (key == null || seen.add(resourceType + '|' + key)) {
+                kept.add(entry);
+            } else {
+                removedCounts.merge(resourceType, 1, Integer::sum);
+            }
+        }
+        if (!removedCounts.isEmpty()) {
+            Collections.reverse(kept);
+            bundle.setEntry(kept);
+            LOGGER.debug("Removed duplicate entries from bundle: {}", removedCounts);
+        }
+        return Collections.unmodifiableMap(removedCounts);
+    }
+
+}
@@ -59,6 +59,15 @@ public class HL7FHIRResourceTemplateAttributes {
     return segment;
   }
 
+  /**
+   * Path of the resource template, relative to the hl7 resource folder.
+   * 
+   * @return String or null if no path was given
+   */
+  public String getResourcePath() {
+    return resourcePath;
+  }
+
 
   public List<HL7Segment> getAdditionalSegments() {
     return new ArrayList<>(additionalSegments);
@@ -6,15 +6,21 @@
 package io.github.linuxforhealth.hl7.message;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
+import org.apache.commons.jexl3.JexlExpression;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Maps;
 import ca.uhn.hl7v2.model.Segment;
 import ca.uhn.hl7v2.model.Type;
 import io.github.linuxforhealth.api.EvaluationResult;
@@ -27,22 +33,52 @@ import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
 import io.github.linuxforhealth.core.expression.SimpleEvaluationResult;
 import io.github.linuxforhealth.hl7.data.Hl7RelatedGeneralUtils;
 import io.github.linuxforhealth.hl7.expression.specification.HL7Specification;
+import io.github.linuxforhealth.hl7.parsing.Er7DataExtractor;
 import io.github.linuxforhealth.hl7.parsing.HL7DataExtractor;
 import io.github.linuxforhealth.hl7.parsing.result.ParsingResult;
 
 public class HL7MessageData implements InputDataExtractor {
   private HL7DataExtractor hde;
+  private Er7DataExtractor er7;
+  // Values extracted from the message, by source structure or type and spec. Lives as long as this data
+  // source, which is created for one message.
+  private final Cache<ExtractionKey, Optional<Object>> extractionCache =
+      CacheBuilder.newBuilder().recordStats().build();
+  // Results of reference expressions, by referenced template and the values it reads
+  private final Cache<Object, Optional<EvaluationResult>> referenceCache =
+      CacheBuilder.newBuilder().recordStats().build();
 
   private static final Logger LOGGER = LoggerFactory.getLogger(HL7MessageData.class);
   protected static final Pattern HL7_SPEC_SPLITTER = Pattern.compile(".");
   private static final JexlEngineUtil JEXL =
       new JexlEngineUtil("GeneralUtils", Hl7RelatedGeneralUtils.class);
 
+  /**
+   * @return JEXL engine shared by all messages, for example to read its cache statistics
+   */
+  public static JexlEngineUtil getJexlEngine() {
+    return JEXL;
+  }
+
   public HL7MessageData(HL7DataExtractor hde) {
     Preconditions.checkArgument(hde != null, "Hl7DataExtractor cannot be null.");
     this.hde = hde;
   }
 
+  /**
+   * Creates the data source with a lookup cache over the raw ER7 text: SEG-field values of segments that are
+   * direct children of the message, the message type and the message control id are read through the
+   * {@link Er7DataExtractor} when the text gives the same value. All other values are read from the parsed
+   * message through the {@link HL7DataExtractor}.
+   *
+   * @param hde Extractor over the parsed message
+   * @param er7 Extractor over the ER7 text the message was parsed from, or null to only use hde
+   */
+  public HL7MessageData(HL7DataExtractor hde, Er7DataExtractor er7) {
+    this(hde);
+    this.er7 = er7;
+  }
+
 
 
   @Override
@@ -86,6 +122,27 @@ public class HL7MessageData implements InputDataExtractor {
 
 
   private Object extractValue(HL7Specification hl7spec, Object obj) {
+    if (obj != null && !(obj instanceof Segment) && !(obj instanceof Type)) {
+      // No value can be extracted from other objects
+      return null;
+    }
+    ExtractionKey key = new ExtractionKey(obj, hl7spec.toString());
+    Optional<Object> cached = extractionCache.getIfPresent(key);
+    if (cached != null) {
+      return copyOf(cached.orElse(null));
+    }
+    Object value = extractUncachedValue(hl7spec, obj);
+    extractionCache.put(key, Optional.ofNullable(copyOf(value)));
+    return value;
+  }
+
+  // Lists are copied so a caller changing the list it got does not change the cached value
+  private static Object copyOf(Object value) {
+    return value instanceof List ? new ArrayList<>((List<?>) value) : value;
+  }
+
+
+  private Object extractUncachedValue(HL7Specification hl7spec, Object obj) {
     EvaluationResult res = null;
     try {
       if (obj instanceof Segment) {
@@ -112,6 +169,10 @@ public class HL7MessageData implements InputDataExtractor {
     if (StringUtils.isNotBlank(hl7spec.getSegment())) {
       ParsingResult<?> res;
       if (StringUtils.isNotBlank(hl7spec.getField())) {
+        String value = er7 != null ? er7.get(hl7spec.getSegment(), hl7spec.getField()) : null;
+        if (value != null) {
+          return EvaluationResultFactory.getEvaluationResult(value);
+        }
         res = hde.get(hl7spec.getSegment(), hl7spec.getField());
       } else {
         res = hde.getAllStructures(hl7spec.getSegment());
@@ -169,29 +230,80 @@ public class HL7MessageData implements InputDataExtractor {
   }
 
 
+  /**
+   * @return Hits and misses of the cache of values extracted from this message
+   */
+  public CacheStats getExtractionCacheStats() {
+    return extractionCache.stats();
+  }
+
+
+  /**
+   * Returns the result of the reference evaluated earlier in this message with the same key, or evaluates
+   * it and keeps the result for the rest of the message. When the same reference is evaluated concurrently,
+   * all callers get the result that was cached first.
+   *
+   * @param key Identifies the referenced template and every value its evaluation reads
+   * @param evaluation Evaluates the reference
+   * @return {@link EvaluationResult}, or null if the reference has no value
+   */
+  public EvaluationResult getReference(Object key, Supplier<EvaluationResult> evaluation) {
+    Preconditions.checkArgument(key != null, "key cannot be null");
+    Optional<EvaluationResult> cached = referenceCache.getIfPresent(key);
+    if (cached == null) {
+      Optional<EvaluationResult> evaluated = Optional.ofNullable(evaluation.get());
+      cached = referenceCache.asMap().putIfAbsent(key, evaluated);
+      if (cached == null) {
+        cached = evaluated;
+      }
+    }
+    return cached.orElse(null);
+  }
+
+
+  /**
+   * @return Hits and misses of the cache of reference results of this message
+   */
+  public CacheStats getReferenceCacheStats() {
+    return referenceCache.stats();
+  }
+
+
   @Override
   public EvaluationResult evaluateJexlExpression(String expression,
       Map<String, EvaluationResult> contextValues) {
     Preconditions.checkArgument(StringUtils.isNotBlank(expression), "jexlExp cannot be blank");
     Preconditions.checkArgument(contextValues != null, "context cannot be null");
     String trimedJexlExp = StringUtils.trim(expression);
-    Map<String, Object> localContext = new HashMap<>();
-    Map<String, EvaluationResult> resolvedVariables = new HashMap<>(contextValues);
-    resolvedVariables.forEach((key, value) -> localContext.put(key, value.getValue()));
+    // Values are read through a view of the context, without copying it
+    Map<String, Object> localContext = Maps.transformValues(contextValues, EvaluationResult::getValue);
     Object obj = JEXL.evaluate(trimedJexlExp, localContext);
     return EvaluationResultFactory.getEvaluationResult(obj);
   }
 
 
+  @Override
+  public EvaluationResult evaluateJexlExpression(JexlExpression expression,
+      Map<String, EvaluationResult> contextValues) {
+    Preconditions.checkArgument(expression != null, "jexlExp cannot be null");
+    Preconditions.checkArgument(contextValues != null, "context cannot be null");
+    Map<String, Object> localContext = Maps.transformValues(contextValues, EvaluationResult::getValue);
+    Object obj = JEXL.evaluate(expression, localContext);
+    return EvaluationResultFactory.getEvaluationResult(obj);
+  }
+
+
   @Override
   public String getName() {
-    return this.hde.getMessageType();
+    String name = er7 != null ? er7.getMessageType() : null;
+    return name != null ? name : this.hde.getMessageType();
   }
 
 
   @Override
   public String getId() {
-    return this.hde.getMessageId();
+    String id = er7 != null ? er7.getMessageId() : null;
+    return id != null ? id : this.hde.getMessageId();
   }
 
 
@@ -220,4 +332,33 @@ public class HL7MessageData implements InputDataExtractor {
   }
 
 
+
+  /**
+   * Source structure or type, compared by identity, and the path of a spec. The extracted value does not
+   * depend on the other attributes of the spec.
+   */
+  private static final class ExtractionKey {
+    private final Object source;
+    private final String path;
+
+    ExtractionKey(Object source, String path) {
+      this.source = source;
+      this.path = path;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof ExtractionKey)) {
+        return false;
+      }
+      ExtractionKey other = (ExtractionKey) obj;
+      return source == other.source && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(source) + path.hashCode();
+    }
+  }
+
 }
@@ -6,17 +6,24 @@
 package io.github.linuxforhealth.hl7.message;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Bundle.BundleType;
 import org.hl7.fhir.r4.model.Meta;
+import org.hl7.fhir.r4.model.Resource;
 import org.joda.time.LocalDateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,7 +32,6 @@ import org.slf4j.MDC;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 
 import ca.uhn.hl7v2.model.Structure;
@@ -37,12 +43,15 @@ import io.github.linuxforhealth.api.ResourceModel;
 import io.github.linuxforhealth.api.ResourceValue;
 import io.github.linuxforhealth.core.Constants;
 import io.github.linuxforhealth.core.ObjectMapperUtil;
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
 import io.github.linuxforhealth.core.exception.RequiredConstraintFailureException;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
+import io.github.linuxforhealth.core.expression.ScopedContextMap;
 import io.github.linuxforhealth.core.expression.SimpleEvaluationResult;
 import io.github.linuxforhealth.core.resource.ResourceResult;
 import io.github.linuxforhealth.core.resource.SimpleResourceValue;
 import io.github.linuxforhealth.fhir.FHIRContext;
+import io.github.linuxforhealth.fhir.FHIRResourceBuilder;
 import io.github.linuxforhealth.fhir.FHIRResourceMapper;
 import io.github.linuxforhealth.hl7.message.util.SegmentExtractorUtil;
 import io.github.linuxforhealth.hl7.message.util.SegmentGroup;
@@ -60,8 +69,13 @@ public class HL7MessageEngine implements MessageEngine {
     private static final String RESOURCE = "Resource";
     private static final Logger LOGGER = LoggerFactory.getLogger(HL7MessageEngine.class);
     private static final ObjectMapper OBJ_MAPPER = ObjectMapperUtil.getJSONInstance();
-    private FHIRContext context;
-    private BundleType bundleType;
+    // Executor for generating the resources of one message concurrently
+    private static final Executor EXECUTOR = ForkJoinPool.commonPool();
+    private final FHIRContext context;
+    private final BundleType bundleType;
+    private final FHIRResourceBuilder resourceBuilder;
+    private final boolean parallelResources;
+    private final BundleDeduplicator bundleDeduplicator;
 
     /**
      * 
@@ -77,8 +91,22 @@ public class HL7MessageEngine implements MessageEngine {
      * @param bundleType Type of bundel
      */
     public HL7MessageEngine(FHIRContext context, BundleType bundleType) {
+        this(context, bundleType, BundleDeduplicator.getInstance());
+    }
+
+    /**
+     * 
+     * @param context Context to be used
+     * @param bundleType Type of bundel
+     * @param bundleDeduplicator Removes the duplicate entries of the bundles
+     */
+    public HL7MessageEngine(FHIRContext context, BundleType bundleType, BundleDeduplicator bundleDeduplicator) {
+        Preconditions.checkArgument(bundleDeduplicator != null, "bundleDeduplicator cannot be null");
         this.context = context;
         this.bundleType = bundleType;
+        this.resourceBuilder = new FHIRResourceBuilder(context.getCtx());
+        this.parallelResources = ConverterConfiguration.getInstance().isParallelResources();
+        this.bundleDeduplicator = bundleDeduplicator;
     }
 
     /**
@@ -91,9 +119,23 @@ public class HL7MessageEngine implements MessageEngine {
     public Bundle transform(final InputDataExtractor dataInput,
             final Iterable<FHIRResourceTemplate> resources,
             final Map<String, EvaluationResult> contextValues) {
+        Preconditions.checkArgument(resources != null, "resources cannot be null");
+        return transform(dataInput, MessageExecutionPlan.compile(resources), contextValues);
+    }
+
+    /**
+     * Converts a HL7 message to a FHIR bundle by executing a compiled plan
+     * 
+     * @param dataInput Message data
+     * @param plan Plan compiled from the resource templates of the message template
+     * @param contextValues Context values
+     * @return Bundle {@link Bundle}
+     */
+    public Bundle transform(final InputDataExtractor dataInput, final MessageExecutionPlan plan,
+            final Map<String, EvaluationResult> contextValues) {
         Preconditions.checkArgument(dataInput != null, "dataInput cannot be null");
         Preconditions.checkArgument(contextValues != null, "contextValues cannot be null");
-        Preconditions.checkArgument(resources != null, "resources cannot be null");
+        Preconditions.checkArgument(plan != null, "plan cannot be null");
 
         HL7MessageData hl7DataInput = (HL7MessageData) dataInput;
         Bundle bundle = initBundle();
@@ -108,14 +150,59 @@ public class HL7MessageEngine implements MessageEngine {
         String zoneIdText =  getFHIRContext().getZoneIdText() != null ? getFHIRContext().getZoneIdText() : "";
         localContextValues.put("ZONEID", new SimpleEvaluationResult<String>(zoneIdText));
  
+        // A resource referenced again with the same data is the same value (see ReferenceExpression), and is
+        // added to the bundle once
+        Set<ResourceValue> added = Collections.newSetFromMap(new IdentityHashMap<>());
         List<ResourceResult> resourceResultsWithEvalLater = new ArrayList<>();
-        for (FHIRResourceTemplate genericTemplate : resources) {
-            HL7FHIRResourceTemplate hl7ResourceTemplate = (HL7FHIRResourceTemplate) genericTemplate;
-            ResourceModel rs = genericTemplate.getResource();
+        if (parallelResources && plan.getSteps().size() > 1) {
+            generateConcurrently(hl7DataInput, plan, bundle, added, localContextValues, resourceResultsWithEvalLater);
+        } else {
+            generateSequentially(hl7DataInput, plan, bundle, added, localContextValues, resourceResultsWithEvalLater);
+        }
+        for (ResourceResult r : resourceResultsWithEvalLater) {
+            MDC.put(RESOURCE, "PendingExpressions");
+            try {
+                Map<String, EvaluationResult> primaryContextValues = new HashMap<>(localContextValues);
+                r.getPendingExpressions().getContextValues().entrySet()
+                        .forEach(e -> primaryContextValues.putIfAbsent(e.getKey(), e.getValue()));
+                ResourceEvaluationResult res = ExpressionUtility.evaluate(hl7DataInput, primaryContextValues,
+                        r.getPendingExpressions().getExpressions());
+
+                Map<String, Object> resolvedValues = new HashMap<>();
+                resolvedValues.putAll(r.getValue().getResource());
+                resolvedValues.putAll(res.getResolveValues());
+                List<ResourceValue> additionalResources = new ArrayList<>();
+                additionalResources.addAll(r.getAdditionalResources());
+                additionalResources.addAll(res.getAdditionalResolveValues());
+                ResourceResult updatedResourceResult = new ResourceResult(
+                        new SimpleResourceValue(resolvedValues, r.getValue().getFHIRResourceType()),
+                        additionalResources, r.getGroupId());
+
+                addResourceToBundle(bundle, added, Lists.newArrayList(updatedResourceResult));
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                LOGGER.error("Exception during resource PendingExpressions generation");
+                LOGGER.debug("Exception during resource PendingExpressions generation", e);
+
+            } finally {
+                MDC.remove(RESOURCE);
+            }
+        }
+
+        LOGGER.info("Successfully converted message");
+        LOGGER.debug("Successfully converted Message: {} , Message Control Id: {} to FHIR bundle resource with id {}",
+                dataInput.getName(), dataInput.getId(), bundle.getId());
+        return bundle;
+    }
+
+    private void generateSequentially(HL7MessageData hl7DataInput, MessageExecutionPlan plan, Bundle bundle,
+            Set<ResourceValue> added, Map<String, EvaluationResult> localContextValues, List<ResourceResult> resourceResultsWithEvalLater) {
+        for (MessageExecutionPlan.ResourceStep step : plan.getSteps()) {
+            HL7FHIRResourceTemplate hl7ResourceTemplate = step.getTemplate();
+            ResourceModel rs = step.getResourceModel();
             List<ResourceResult> resourceResults = new ArrayList<>();
             try {
                 MDC.put(RESOURCE, rs.getName());
-                List<ResourceResult> results = generateResources(hl7DataInput, hl7ResourceTemplate, localContextValues);
+                List<ResourceResult> results = generateResources(hl7DataInput, step, localContextValues);
                 if (results != null) {
                     resourceResults.addAll(results);
                     results.stream()
@@ -127,7 +214,7 @@ public class HL7MessageEngine implements MessageEngine {
                                     r -> (r.getPendingExpressions() == null || r.getPendingExpressions().isEmpty()))
                             .collect(Collectors.toList());
 
-                    addResourceToBundle(bundle, resultsToAddToBundle);
+                    addResourceToBundle(bundle, added, resultsToAddToBundle);
 
                 }
 
@@ -143,62 +230,105 @@ public class HL7MessageEngine implements MessageEngine {
                 MDC.remove(RESOURCE);
             }
         }
-        for (ResourceResult r : resourceResultsWithEvalLater) {
-            MDC.put(RESOURCE, "PendingExpressions");
-            try {
-                Map<String, EvaluationResult> primaryContextValues = new HashMap<>(localContextValues);
-                r.getPendingExpressions().getContextValues().entrySet()
-                        .forEach(e -> primaryContextValues.putIfAbsent(e.getKey(), e.getValue()));
-                ResourceEvaluationResult res = ExpressionUtility.evaluate(hl7DataInput, primaryContextValues,
-                        r.getPendingExpressions().getExpressions());
+    }
 
-                Map<String, Object> resolvedValues = new HashMap<>();
-                resolvedValues.putAll(r.getValue().getResource());
-                resolvedValues.putAll(res.getResolveValues());
-                List<ResourceValue> additionalResources = new ArrayList<>();
-                additionalResources.addAll(r.getAdditionalResources());
-                additionalResources.addAll(res.getAdditionalResolveValues());
-                ResourceResult updatedResourceResult = new ResourceResult(
-                        new SimpleResourceValue(resolvedValues, r.getValue().getFHIRResourceType()),
-                        additionalResources, r.getGroupId());
+    /**
+     * Generates the resources of independent steps concurrently. Each step starts once the steps it depends
+     * on are done, with the context values they generated. Resources are added to the bundle, and the context
+     * values of all steps merged, in step order on the calling thread, so the bundle is the same as when the
+     * steps run one after the other.
+     */
+    private void generateConcurrently(HL7MessageData hl7DataInput, MessageExecutionPlan plan, Bundle bundle,
+            Set<ResourceValue> added, Map<String, EvaluationResult> localContextValues, List<ResourceResult> resourceResultsWithEvalLater) {
+        List<MessageExecutionPlan.ResourceStep> steps = plan.getSteps();
+        Map<String, EvaluationResult> baseContextValues = Collections.unmodifiableMap(new HashMap<>(localContextValues));
+        List<CompletableFuture<StepResult>> futures = new ArrayList<>(steps.size());
+        for (int i = 0; i < steps.size(); i++) {
+            MessageExecutionPlan.ResourceStep step = steps.get(i);
+            List<CompletableFuture<StepResult>> required = new ArrayList<>();
+            for (int dependency : plan.getDependencies(i)) {
+                required.add(futures.get(dependency));
+            }
+            futures.add(CompletableFuture.allOf(required.toArray(new CompletableFuture<?>[0])).thenApplyAsync(done -> {
+                Map<String, EvaluationResult> stepContextValues = new HashMap<>(baseContextValues);
+                required.forEach(dependency -> stepContextValues.putAll(dependency.join().contextValues));
+                return generateStep(hl7DataInput, step, stepContextValues);
+            }, EXECUTOR));
+        }
 
-                addResourceToBundle(bundle, Lists.newArrayList(updatedResourceResult));
-            } catch (IllegalArgumentException | IllegalStateException e) {
-                LOGGER.error("Exception during resource PendingExpressions generation");
-                LOGGER.debug("Exception during resource PendingExpressions generation", e);
+        for (int i = 0; i < steps.size(); i++) {
+            StepResult result = futures.get(i).join();
+            if (result.results != null) {
+                result.results.stream()
+                        .filter(r -> (r.getPendingExpressions() != null && !r.getPendingExpressions().isEmpty()))
+                        .forEach(resourceResultsWithEvalLater::add);
+                String name = steps.get(i).getResourceModel().getName();
+                try {
+                    MDC.put(RESOURCE, name);
+                    addResourceToBundle(bundle, added, result.results.stream()
+                            .filter(r -> (r.getPendingExpressions() == null || r.getPendingExpressions().isEmpty()))
+                            .collect(Collectors.toList()));
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    LOGGER.error("Exception during resource {} generation", name);
+                    LOGGER.debug("Exception during resource {} generation", name, e);
+                } finally {
+                    MDC.remove(RESOURCE);
+                }
+            }
+            localContextValues.putAll(result.contextValues);
+        }
+    }
 
-            } finally {
-                MDC.remove(RESOURCE);
+    private static StepResult generateStep(HL7MessageData hl7DataInput, MessageExecutionPlan.ResourceStep step,
+            Map<String, EvaluationResult> contextValues) {
+        ResourceModel rs = step.getResourceModel();
+        try {
+            MDC.put(RESOURCE, rs.getName());
+            List<ResourceResult> results = generateResources(hl7DataInput, step, contextValues);
+            List<ResourceResult> resourceResults = new ArrayList<>();
+            if (results != null) {
+                resourceResults.addAll(results);
             }
+            resourceResults.removeIf(isEmpty());
+            return new StepResult(results, getContextValuesFromResource(step.getTemplate(), resourceResults));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            LOGGER.error("Exception during resource {} generation", rs.getName());
+            LOGGER.debug("Exception during resource {} generation", rs.getName(), e);
+            return new StepResult(null, new HashMap<>());
+        } finally {
+            MDC.remove(RESOURCE);
         }
+    }
 
-        LOGGER.info("Successfully converted message");
-        LOGGER.debug("Successfully converted Message: {} , Message Control Id: {} to FHIR bundle resource with id {}",
-                dataInput.getName(), dataInput.getId(), bundle.getId());
-        return bundle;
+    private static class StepResult {
+        private final List<ResourceResult> results;
+        private final Map<String, EvaluationResult> contextValues;
+
+        StepResult(List<ResourceResult> results, Map<String, EvaluationResult> contextValues) {
+            this.results = results;
+            this.contextValues = contextValues;
+        }
     }
 
-    private List<ResourceResult> generateResources(HL7MessageData hl7DataInput,
-            HL7FHIRResourceTemplate template, Map<String, EvaluationResult> contextValues) {
+    private static List<ResourceResult> generateResources(HL7MessageData hl7DataInput,
+            MessageExecutionPlan.ResourceStep step, Map<String, EvaluationResult> contextValues) {
 
-        ResourceModel resourceModel = template.getResource();
-        List<String> segmentGroup = template.getAttributes().getSegment().getGroup();
-        String segment = template.getAttributes().getSegment().getSegment();
         List<ResourceResult> resourceResults = null;
-        List<SegmentGroup> multipleSegments = getMultipleSegments(hl7DataInput, template, segmentGroup, segment);
+        List<SegmentGroup> multipleSegments = getMultipleSegments(hl7DataInput, step);
         if (!multipleSegments.isEmpty()) {
 
-            resourceResults = generateMultipleResources(hl7DataInput, resourceModel, contextValues,
-                    multipleSegments, template.isGenerateMultiple());
+            resourceResults = generateMultipleResources(hl7DataInput, step.getResourceModel(), contextValues,
+                    multipleSegments, step.getTemplate().isGenerateMultiple());
         }
         return resourceResults;
     }
 
-    private void addResourceToBundle(Bundle bundle, List<ResourceResult> resourceResults) {
+    private void addResourceToBundle(Bundle bundle, Set<ResourceValue> added,
+            List<ResourceResult> resourceResults) {
         if (resourceResults != null && !resourceResults.isEmpty()) {
             for (ResourceResult resReult : resourceResults) {
-                addToBundle(bundle, Lists.newArrayList(resReult.getValue()));
-                addToBundle(bundle, resReult.getAdditionalResources());
+                addToBundle(bundle, added, Lists.newArrayList(resReult.getValue()));
+                addToBundle(bundle, added, resReult.getAdditionalResources());
             }
         }
     }
@@ -267,16 +397,15 @@ public class HL7MessageEngine implements MessageEngine {
     }
 
     private static List<SegmentGroup> getMultipleSegments(final HL7MessageData hl7DataInput,
-            final HL7FHIRResourceTemplate template, List<String> segmentGroup, String segment) {
+            final MessageExecutionPlan.ResourceStep step) {
         List<SegmentGroup> multipleSegments;
-        if (segmentGroup != null && !segmentGroup.isEmpty()) {
-            multipleSegments = SegmentExtractorUtil.extractSegmentGroups(segmentGroup, segment,
-                    template.getAttributes().getAdditionalSegments(), hl7DataInput.getHL7DataParser(),
-                    template.getAttributes().getGroup());
+        if (step.getSegmentGroup() != null && !step.getSegmentGroup().isEmpty()) {
+            multipleSegments = SegmentExtractorUtil.extractSegmentGroups(step.getSegmentGroup(), step.getSegment(),
+                    step.getAdditionalSegments(), hl7DataInput.getHL7DataParser(), step.getGroup());
 
         } else {
-            multipleSegments = SegmentExtractorUtil.extractSegmentNonGroups(segment,
-                    template.getAttributes().getAdditionalSegments(), hl7DataInput.getHL7DataParser());
+            multipleSegments = SegmentExtractorUtil.extractSegmentNonGroups(step.getSegment(),
+                    step.getAdditionalSegments(), hl7DataInput.getHL7DataParser());
 
         }
         return multipleSegments;
@@ -286,21 +415,21 @@ public class HL7MessageEngine implements MessageEngine {
             final ResourceModel rs, final Map<String, EvaluationResult> contextValues,
             final List<SegmentGroup> multipleSegments, boolean generateMultiple) {
         List<ResourceResult> resourceResults = new ArrayList<>();
+        ScopedContextMap messageContextValues = ScopedContextMap.of(contextValues);
         for (SegmentGroup currentGroup : multipleSegments) {
 
-            Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
-            localContextValues.put(Constants.GROUP_ID,
+            ScopedContextMap localContextValues = messageContextValues.with(Constants.GROUP_ID,
                     EvaluationResultFactory.getEvaluationResult(currentGroup.getGroupId()));
             // Resource needs to be generated for each base value in the group
             List<EvaluationResult> baseValues = new ArrayList<>();
             currentGroup.getSegments()
                     .forEach(struct -> baseValues.add(EvaluationResultFactory.getEvaluationResult(struct)));
 
-            localContextValues.putAll(getContextMap(currentGroup));
+            localContextValues = localContextValues.withAll(getContextMap(currentGroup));
 
             for (EvaluationResult baseValue : baseValues) {
                 try {
-                    ResourceResult result = rs.evaluate(hl7DataInput, ImmutableMap.copyOf(localContextValues),
+                    ResourceResult result = rs.evaluate(hl7DataInput, localContextValues,
                             baseValue);
                     if (result != null && result.getValue() != null) {
                         resourceResults.add(result);
@@ -319,9 +448,9 @@ public class HL7MessageEngine implements MessageEngine {
         return resourceResults;
     }
 
-    private void addToBundle(Bundle bundle, List<ResourceValue> objects) {
+    private void addToBundle(Bundle bundle, Set<ResourceValue> added, List<ResourceValue> objects) {
         if (objects != null && !objects.isEmpty()) {
-            objects.forEach(obj -> addEntry(obj.getFHIRResourceType(), obj, bundle));
+            objects.stream().filter(added::add).forEach(obj -> addEntry(obj.getFHIRResourceType(), obj, bundle));
         }
     }
 
@@ -330,12 +459,17 @@ public class HL7MessageEngine implements MessageEngine {
         try {
             if (obj != null) {
                 LOGGER.debug("Converting resourceName {} to FHIR {}", resourceClass, obj.getResource());
-                String json = OBJ_MAPPER.writeValueAsString(obj.getResource());
-                LOGGER.debug("Adding resourceName {} to FHIR {}", resourceClass, json);
-                if (json != null) {
-                    org.hl7.fhir.r4.model.Resource parsed = context.getParser()
-                            .parseResource(FHIRResourceMapper.getResourceClass(resourceClass), json);
-
+                Class<? extends Resource> resourceType = FHIRResourceMapper.getResourceClass(resourceClass);
+                Resource parsed = resourceBuilder.build(resourceType, obj.getResource());
+                if (parsed == null) {
+                    // Values the builder cannot map go through the JSON parser
+                    String json = OBJ_MAPPER.writeValueAsString(obj.getResource());
+                    LOGGER.debug("Adding resourceName {} to FHIR {}", resourceClass, json);
+                    if (json != null) {
+                        parsed = context.getParser().parseResource(resourceType, json);
+                    }
+                }
+                if (parsed != null) {
                     bundle.addEntry().setResource(parsed).setFullUrl(parsed.getId());
                 }
             }
@@ -349,4 +483,15 @@ public class HL7MessageEngine implements MessageEngine {
     public FHIRContext getFHIRContext() {
         return context;
     }
+
+    public BundleDeduplicator getBundleDeduplicator() {
+        return bundleDeduplicator;
+    }
+
+    /**
+     * @return true if independent resource templates of a message are generated concurrently
+     */
+    public boolean isParallelResources() {
+        return parallelResources;
+    }
 }
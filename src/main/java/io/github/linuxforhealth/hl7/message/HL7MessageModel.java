@@ -8,23 +8,26 @@ package io.github.linuxforhealth.hl7.message;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
 import org.hl7.fhir.r4.model.Bundle;
-import org.hl7.fhir.r4.model.Bundle.BundleEntryComponent;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheStats;
 import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.model.Message;
 import io.github.linuxforhealth.api.FHIRResourceTemplate;
 import io.github.linuxforhealth.api.MessageEngine;
 import io.github.linuxforhealth.api.MessageTemplate;
+import io.github.linuxforhealth.hl7.parsing.ConcurrentHL7DataExtractor;
+import io.github.linuxforhealth.hl7.parsing.Er7DataExtractor;
+import io.github.linuxforhealth.hl7.parsing.Er7MessageIndex;
 import io.github.linuxforhealth.hl7.parsing.HL7DataExtractor;
-import io.github.linuxforhealth.hl7.parsing.HL7HapiParser;
+import io.github.linuxforhealth.hl7.parsing.HL7HapiParserPool;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +35,7 @@ import org.slf4j.LoggerFactory;
 public class HL7MessageModel implements MessageTemplate<Message> {
 
     private List<FHIRResourceTemplate> resources;
+    private MessageExecutionPlan plan;
     private String messageName;
     private static final Logger LOGGER = LoggerFactory.getLogger(HL7MessageModel.class);
 
@@ -43,6 +47,7 @@ public class HL7MessageModel implements MessageTemplate<Message> {
         if (resources != null && !resources.isEmpty()) {
             this.resources.addAll(resources);
         }
+        this.plan = MessageExecutionPlan.compile(this.resources);
 
     }
 
@@ -59,39 +64,58 @@ public class HL7MessageModel implements MessageTemplate<Message> {
     public String convert(String message, MessageEngine engine) throws IOException {
         Preconditions.checkArgument(StringUtils.isNotBlank(message),
                 "Input Hl7 message cannot be blank");
-        HL7HapiParser hparser = null;
         try {
-            hparser = new HL7HapiParser();
-
-            Message hl7message = hparser.getParser().parse(message);
+            Message hl7message = HL7HapiParserPool.getInstance().parse(message);
             Bundle bundle = convert(hl7message, engine);
             return engine.getFHIRContext().encodeResourceToString(bundle);
 
         } catch (HL7Exception e) {
             throw new IllegalArgumentException("Cannot parse the message.", e);
-        } finally {
-            if (hparser != null) {
-                hparser.getContext().close();
-            }
         }
 
     }
 
     @Override
     public Bundle convert(Message message, MessageEngine engine) {
+        return convert(message, null, engine);
+    }
+
+    /**
+     * Converts the message, reading the values that allow it from the ER7 text the message was parsed from.
+     *
+     * @param message Parsed message
+     * @param index Index of the ER7 text the message was parsed from, or null to read all values from the
+     *        parsed message
+     * @param engine {@link MessageEngine}
+     * @return Bundle {@link Bundle}
+     */
+    public Bundle convert(Message message, Er7MessageIndex index, MessageEngine engine) {
         Preconditions.checkArgument(message != null, "Input Hl7 message cannot be null");
         Preconditions.checkArgument(engine != null, "MessageEngine cannot be null");
 
-        HL7DataExtractor hl7DTE = new HL7DataExtractor(message);
-        HL7MessageData dataSource = new HL7MessageData(hl7DTE);
+        // Resources generated concurrently read the message from several threads
+        boolean concurrent = engine instanceof HL7MessageEngine && ((HL7MessageEngine) engine).isParallelResources();
+        HL7DataExtractor hl7DTE = concurrent ? new ConcurrentHL7DataExtractor(message) : new HL7DataExtractor(message);
+        HL7MessageData dataSource = new HL7MessageData(hl7DTE,
+                index != null ? new Er7DataExtractor(index, message) : null);
 
         Bundle bundle = null;
 
         // Catch any exceptions and log them without the message.
         // NOTE: We have seen PHI in these exception messages.
         try {
-            bundle = engine.transform(dataSource, this.getResources(), new HashMap<>());
-            deduplicate(bundle);  // Bundle is passed by reference and may be modified
+            if (engine instanceof HL7MessageEngine) {
+                bundle = ((HL7MessageEngine) engine).transform(dataSource, plan, new HashMap<>());
+            } else {
+                bundle = engine.transform(dataSource, this.getResources(), new HashMap<>());
+            }
+            CacheStats stats = dataSource.getExtractionCacheStats();
+            LOGGER.debug("Extraction cache for message type {}: {} hits, {} misses, hit rate {}",
+                    messageName, stats.hitCount(), stats.missCount(), stats.hitRate());
+            BundleDeduplicator deduplicator = engine instanceof HL7MessageEngine
+                    ? ((HL7MessageEngine) engine).getBundleDeduplicator() : BundleDeduplicator.getInstance();
+            Map<String, Integer> removed = deduplicator.deduplicate(bundle);  // Bundle is passed by reference and may be modified
+            LOGGER.debug("Duplicate entries removed for message type {}: {}", messageName, removed);
             engine.getFHIRContext().validate(bundle);
 
         } catch (Exception e) {
@@ -111,36 +135,16 @@ public class HL7MessageModel implements MessageTemplate<Message> {
         this.messageName = messageName;
     }
 
+    /**
+     * @return Plan compiled from the resource templates
+     */
+    public MessageExecutionPlan getPlan() {
+        return plan;
+    }
+
     @Override
     public List<FHIRResourceTemplate> getResources() {
         return new ArrayList<>(resources);
     }
 
-    // General deduplication utility. Currently only Organizations.
-    // Bundle is passed by reference and may be modified
-    private void deduplicate(Bundle bundle) {
-        List<BundleEntryComponent> entries = bundle.getEntry();
-        Iterator<BundleEntryComponent> i = entries.iterator();
-        while (i.hasNext()) {
-            BundleEntryComponent entry = i.next(); // Safe traversal for removal
-            // Currently only looking for duplicate Organizations, because their Urls and Id's are created from org data.
-            if (entry.getFullUrl().startsWith("Organization/") && duplicateFound(entry, entries)) {
-                i.remove();  // Safe removal
-            }
-        }
-    }
-
-    // Determine if an entry has duplicates by counting all the entries which have the same Url.
-    // If count > 1 then it has duplicates.  (It will be counted, too, as 1.)
-    private boolean duplicateFound(BundleEntryComponent entry, List<BundleEntryComponent> entries) {
-        String targetUrl = entry.getFullUrl();
-        Integer foundCount = 0;
-        for (BundleEntryComponent component : entries) {
-            if (component.getFullUrl().equals(targetUrl)) {
-                foundCount++;
-            }
-        }
-        return foundCount > 1;
-    }
-
 }
@@ -0,0 +1,142 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.message;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+
+import io.github.linuxforhealth.api.FHIRResourceTemplate;
+import io.github.linuxforhealth.api.ResourceModel;
+
+/**
+ * Immutable plan for converting one message type, compiled once from the resource templates of the message
+ * template. Each step holds what {@link HL7MessageEngine} needs to generate the resources of one template,
+ * read from the template attributes up front, so converting a message only executes the plan. Later templates
+ * can reference the resources generated by earlier ones, so steps run in template order, or concurrently when
+ * {@link #getDependencies(int)} shows they are independent.
+ */
+public final class MessageExecutionPlan {
+
+    private final List<ResourceStep> steps;
+    // Indexes of the earlier steps each step reads context values from, computed on first use
+    private volatile int[][] dependencies;
+
+    private MessageExecutionPlan(List<ResourceStep> steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Compiles the plan for the resource templates.
+     *
+     * @param resources Resource templates in conversion order
+     * @return {@link MessageExecutionPlan}
+     */
+    public static MessageExecutionPlan compile(Iterable<FHIRResourceTemplate> resources) {
+        Preconditions.checkArgument(resources != null, "resources cannot be null");
+        List<ResourceStep> steps = new ArrayList<>();
+        for (FHIRResourceTemplate template : resources) {
+            steps.add(new ResourceStep((HL7FHIRResourceTemplate) template));
+        }
+        return new MessageExecutionPlan(Collections.unmodifiableList(steps));
+    }
+
+    public List<ResourceStep> getSteps() {
+        return steps;
+    }
+
+    /**
+     * Returns the earlier steps whose generated resources the step can read. Only referenced templates add
+     * their resources to the context values, and in sequential conversion a step sees the context values of
+     * every earlier step, so a step depends on every earlier referenced step. Steps of templates that are not
+     * referenced can then run concurrently and see the same context values as in sequential conversion.
+     *
+     * @param step Index of the step
+     * @return Indexes of the steps, in ascending order
+     */
+    public int[] getDependencies(int step) {
+        int[][] result = dependencies;
+        if (result == null) {
+            result = findDependencies(steps);
+            dependencies = result;
+        }
+        return result[step].clone();
+    }
+
+    private static int[][] findDependencies(List<ResourceStep> steps) {
+        int[][] result = new int[steps.size()][];
+        List<Integer> referenced = new ArrayList<>();
+        for (int i = 0; i < steps.size(); i++) {
+            result[i] = referenced.stream().mapToInt(Integer::intValue).toArray();
+            if (steps.get(i).getTemplate().isReferenced()) {
+                referenced.add(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Generation of the resources of one resource template.
+     */
+    public static final class ResourceStep {
+        private final HL7FHIRResourceTemplate template;
+        private final ResourceModel resourceModel;
+        private final String segment;
+        private final List<String> segmentGroup;
+        private final List<HL7Segment> additionalSegments;
+        private final List<String> group;
+
+        private ResourceStep(HL7FHIRResourceTemplate template) {
+            HL7FHIRResourceTemplateAttributes attributes = template.getAttributes();
+            this.template = template;
+            this.resourceModel = template.getResource();
+            this.segment = attributes.getSegment().getSegment();
+            this.segmentGroup = immutableCopy(attributes.getSegment().getGroup());
+            this.additionalSegments = immutableCopy(attributes.getAdditionalSegments());
+            this.group = immutableCopy(attributes.getGroup());
+        }
+
+        private static <T> List<T> immutableCopy(List<T> list) {
+            return list != null ? Collections.unmodifiableList(new ArrayList<>(list)) : null;
+        }
+
+        public HL7FHIRResourceTemplate getTemplate() {
+            return template;
+        }
+
+        public ResourceModel getResourceModel() {
+            return resourceModel;
+        }
+
+        /**
+         * @return Primary segment name
+         */
+        public String getSegment() {
+            return segment;
+        }
+
+        /**
+         * @return Groups of the primary segment, outermost first, or null if the segment is not in a group
+         */
+        public List<String> getSegmentGroup() {
+            return segmentGroup;
+        }
+
+        public List<HL7Segment> getAdditionalSegments() {
+            return additionalSegments;
+        }
+
+        /**
+         * @return Group used to generate one resource per group repetition, or null
+         */
+        public List<String> getGroup() {
+            return group;
+        }
+    }
+
+}
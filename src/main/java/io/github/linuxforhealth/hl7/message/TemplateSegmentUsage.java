@@ -0,0 +1,179 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.message;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.linuxforhealth.api.Expression;
+import io.github.linuxforhealth.api.FHIRResourceTemplate;
+import io.github.linuxforhealth.api.ResourceModel;
+import io.github.linuxforhealth.api.Specification;
+import io.github.linuxforhealth.api.Variable;
+import io.github.linuxforhealth.core.expression.VariableUtils;
+import io.github.linuxforhealth.hl7.expression.Hl7Expression;
+import io.github.linuxforhealth.hl7.expression.JEXLExpression;
+import io.github.linuxforhealth.hl7.expression.NestedExpression;
+import io.github.linuxforhealth.hl7.expression.ReferenceExpression;
+import io.github.linuxforhealth.hl7.expression.ResourceExpression;
+import io.github.linuxforhealth.hl7.expression.SimpleExpression;
+import io.github.linuxforhealth.hl7.expression.specification.HL7Specification;
+import io.github.linuxforhealth.hl7.expression.specification.SpecificationParser;
+import io.github.linuxforhealth.hl7.resource.HL7DataBasedResourceModel;
+import io.github.linuxforhealth.hl7.resource.ResourceReader;
+
+/**
+ * Finds the HL7 segments a message template can read, and the templates a template uses. The segments are
+ * the ones named by the message template and by the HL7 specifications of the parsed resource templates it
+ * uses, following the resource and reference expressions to the templates they generate in turn. Template
+ * contents are kept for the life of the instance, so one instance can analyze several templates sharing
+ * resource templates.
+ */
+public class TemplateSegmentUsage {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TemplateSegmentUsage.class);
+
+    private static final Pattern TEMPLATE_REFERENCE = Pattern
+            .compile("^\\s*-?\\s*(?:valueOf|resourcePath)\\s*:\\s*['\"]?([A-Za-z_]+/[A-Za-z0-9_/]+)['\"]?\\s*$",
+                    Pattern.MULTILINE);
+    private static final String TEMPLATE_EXTENSION = ".yml";
+
+    private final Map<String, String> templateContents = new HashMap<>();
+
+    /**
+     * Returns the names of the segments the message template can read. The result can contain names that are
+     * not segments, such as the data type of a specification relative to a base value.
+     *
+     * @param model Message template
+     * @return Set of segment names, or null if a resource template uses an expression that cannot be analyzed
+     */
+    public Set<String> getReferencedSegments(HL7MessageModel model) {
+        Set<String> segments = new HashSet<>();
+        segments.add("MSH");
+        Set<ResourceModel> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (FHIRResourceTemplate template : model.getResources()) {
+            HL7FHIRResourceTemplateAttributes attributes = ((HL7FHIRResourceTemplate) template).getAttributes();
+            segments.add(attributes.getSegment().getSegment());
+            attributes.getAdditionalSegments().forEach(s -> segments.add(s.getSegment()));
+            if (!addSegments(template.getResource(), segments, visited)) {
+                return null;
+            }
+        }
+        return Collections.unmodifiableSet(segments);
+    }
+
+    private static boolean addSegments(ResourceModel model, Set<String> segments, Set<ResourceModel> visited) {
+        if (!(model instanceof HL7DataBasedResourceModel)) {
+            LOGGER.warn("Cannot find the segments read by resource template {}", model.getName());
+            return false;
+        }
+        if (!visited.add(model)) {
+            return true;
+        }
+        for (Expression expression : model.getExpressions().values()) {
+            if (!addSegments(expression, segments, visited)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean addSegments(Expression expression, Set<String> segments, Set<ResourceModel> visited) {
+        expression.getspecs().forEach(spec -> addSegment(spec, segments));
+        for (Variable variable : expression.getVariables()) {
+            for (String spec : variable.getSpec()) {
+                if (!VariableUtils.isVar(spec)) {
+                    addSegment(SpecificationParser.parse(spec, false, false), segments);
+                }
+            }
+        }
+
+        ResourceReader reader = ResourceReader.getInstance();
+        if (expression instanceof ResourceExpression) {
+            return addSegments(reader.generateResourceModel(((ResourceExpression) expression).getResource()),
+                    segments, visited);
+        } else if (expression instanceof ReferenceExpression) {
+            return addSegments(reader.generateResourceModel(((ReferenceExpression) expression).getReference()),
+                    segments, visited)
+                    && addSegments(reader.generateResourceModel(ReferenceExpression.REFERENCE_TEMPLATE), segments,
+                            visited);
+        } else if (expression instanceof NestedExpression) {
+            for (Expression child : ((NestedExpression) expression).getChildExpressions().values()) {
+                if (!addSegments(child, segments, visited)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (expression instanceof Hl7Expression || expression instanceof JEXLExpression
+                || expression instanceof SimpleExpression) {
+            return true;
+        }
+        LOGGER.warn("Cannot find the segments read by expression type {}", expression.getClass().getSimpleName());
+        return false;
+    }
+
+    private static void addSegment(Specification spec, Set<String> segments) {
+        if (spec instanceof HL7Specification && ((HL7Specification) spec).getSegment() != null) {
+            segments.add(((HL7Specification) spec).getSegment());
+        }
+    }
+
+    /**
+     * Returns the contents of the templates and of every template they reference, directly or indirectly.
+     *
+     * @param paths Template paths, relative to the hl7 resource folder and without extension
+     * @return Template contents, or null if a template cannot be read
+     */
+    public List<String> getReachableContents(Collection<String> paths) {
+        List<String> contents = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        Deque<String> templates = new ArrayDeque<>(paths);
+        while (!templates.isEmpty()) {
+            String path = templates.poll();
+            if (!visited.add(path)) {
+                continue;
+            }
+            String content;
+            try {
+                content = getTemplateContent(path);
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Cannot read template {} to find what it uses.", path);
+                LOGGER.debug("Cannot read template {} to find what it uses.", path, e);
+                return null;
+            }
+            contents.add(content);
+            Matcher references = TEMPLATE_REFERENCE.matcher(content);
+            while (references.find()) {
+                templates.add(references.group(1));
+            }
+        }
+        return contents;
+    }
+
+    private String getTemplateContent(String path) {
+        String content = templateContents.get(path);
+        if (content == null) {
+            content = ResourceReader.getInstance().getResourceInHl7Folder(path + TEMPLATE_EXTENSION);
+            templateContents.put(path, content);
+        }
+        return content;
+    }
+
+}
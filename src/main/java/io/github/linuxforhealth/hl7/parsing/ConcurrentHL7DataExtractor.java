@@ -0,0 +1,229 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Composite;
+import ca.uhn.hl7v2.model.ExtraComponents;
+import ca.uhn.hl7v2.model.GenericComposite;
+import ca.uhn.hl7v2.model.Group;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Primitive;
+import ca.uhn.hl7v2.model.Segment;
+import ca.uhn.hl7v2.model.Structure;
+import ca.uhn.hl7v2.model.Type;
+import ca.uhn.hl7v2.model.Variable;
+import ca.uhn.hl7v2.util.Terser;
+import io.github.linuxforhealth.hl7.parsing.result.Hl7ParsingStructureResult;
+import io.github.linuxforhealth.hl7.parsing.result.Hl7ParsingTypeResult;
+import io.github.linuxforhealth.hl7.parsing.result.ParsingResult;
+
+/**
+ * {@link HL7DataExtractor} for a message read by several threads, used when the resources of a message are
+ * generated concurrently. HAPI creates missing group repetitions, field repetitions and components when they
+ * are read, so the reads that can do this return what the message already has instead, and the Terser reads
+ * are serialized on the message. Values found are the same as the ones {@link HL7DataExtractor} returns.
+ */
+public class ConcurrentHL7DataExtractor extends HL7DataExtractor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrentHL7DataExtractor.class);
+
+    private final Message message;
+
+    public ConcurrentHL7DataExtractor(Message message) {
+        super(message);
+        this.message = message;
+    }
+
+    @Override
+    public ParsingResult<Structure> getStructure(String group, int groupRep, String segment, int rep) {
+        try {
+            Preconditions.checkArgument(StringUtils.isNotBlank(group), "group cannot be null or empty");
+            Preconditions.checkArgument(StringUtils.isNotBlank(segment), "segment cannot be null or empty");
+            Preconditions.checkArgument(groupRep >= 0, "groupRep should be greater than or equal to 0");
+            Preconditions.checkArgument(rep >= 0, "Segment rep cannot be less than 0");
+
+            Structure groupStr = getExisting(message, group, groupRep);
+            Structure s = groupStr instanceof Group ? getExisting((Group) groupStr, segment, rep) : null;
+            if (s != null && !s.isEmpty()) {
+                return new Hl7ParsingStructureResult(s);
+            }
+            return new Hl7ParsingStructureResult(new ArrayList<>());
+        } catch (HL7Exception | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            String spec = group + " " + groupRep + " " + segment;
+            LOGGER.debug("Cannot extract value for {} rep {}", spec, rep, e);
+            LOGGER.warn("Cannot extract value for {} rep {}", spec, rep);
+            return new Hl7ParsingStructureResult(new ArrayList<>());
+        }
+    }
+
+    @Override
+    public ParsingResult<Structure> getAllStructures(String group, int groupRep, String segment) {
+        try {
+            Preconditions.checkArgument(StringUtils.isNotBlank(group), "group cannot be null or empty");
+            Preconditions.checkArgument(StringUtils.isNotBlank(segment), "segment cannot be null or empty");
+            Preconditions.checkArgument(groupRep >= 0, "groupRep should be greater than or equal to 0");
+
+            Structure groupStr = getExisting(message, group, groupRep);
+            if (groupStr instanceof Group) {
+                List<Structure> list = new ArrayList<>();
+                for (Structure s : ((Group) groupStr).getAll(segment)) {
+                    if (!s.isEmpty()) {
+                        list.add(s);
+                    }
+                }
+                return new Hl7ParsingStructureResult(list);
+            }
+            return new Hl7ParsingStructureResult(new ArrayList<>());
+        } catch (HL7Exception | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            String spec = group + " " + groupRep + " " + segment;
+            LOGGER.debug("Cannot extract value for {} ", spec, e);
+            LOGGER.warn("Cannot extract value for {} ", spec);
+            return new Hl7ParsingStructureResult(new ArrayList<>());
+        }
+    }
+
+    @Override
+    public ParsingResult<Type> getType(Segment segment, int field, int rep) {
+        try {
+            Preconditions.checkArgument(segment != null, "segment cannot be null");
+            Preconditions.checkArgument(field >= 1, "field cannot be negative");
+            Preconditions.checkArgument(rep >= 0, "rep cannot be negative");
+            Type[] reps = segment.getField(field);
+            if (rep >= reps.length) {
+                return new Hl7ParsingTypeResult(new ArrayList<>());
+            }
+            return new Hl7ParsingTypeResult(reps[rep]);
+        } catch (HL7Exception | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            LOGGER.debug("Cannot extract value for {} rep {}  field {} ", segment, rep, field, e);
+            LOGGER.warn("Cannot extract value for {} rep {} field {} ", segment, rep, field);
+            return new Hl7ParsingTypeResult(new ArrayList<>());
+        }
+    }
+
+    @Override
+    public ParsingResult<Type> getComponent(Type inputType, int component) {
+        try {
+            Preconditions.checkArgument(inputType != null, "type!=null");
+            Type type = inputType;
+            if (inputType instanceof Variable) {
+                type = ((Variable) inputType).getData();
+            }
+            if (!(type instanceof Composite)) {
+                return new Hl7ParsingTypeResult(type);
+            }
+            Type[] components = ((Composite) type).getComponents();
+            Type value = component - 1 < components.length ? components[component - 1] : null;
+            if (value != null && !value.isEmpty()) {
+                return new Hl7ParsingTypeResult(value);
+            }
+            return new Hl7ParsingTypeResult(new ArrayList<>());
+        } catch (IllegalArgumentException | HL7Exception | ArrayIndexOutOfBoundsException e) {
+            LOGGER.debug("Cannot extract value for type {} component {} ", inputType, component, e);
+            LOGGER.warn("Cannot extract value for type {} component {} ", inputType, component);
+            return new Hl7ParsingTypeResult(new ArrayList<>());
+        }
+    }
+
+    @Override
+    public ParsingResult<Type> getComponent(Type inputType, int component, int subComponent) {
+        try {
+            Preconditions.checkArgument(inputType != null, "inputType!=null");
+            Preconditions.checkArgument(component >= 1 && subComponent >= 1,
+                    "component and subComponent should be greater than 0");
+            Type type = inputType;
+            if (inputType instanceof Variable) {
+                type = ((Variable) inputType).getData();
+            }
+            Primitive prim = getFirstPrimitive(getExisting(getExisting(type, component), subComponent));
+            if (prim != null && !prim.isEmpty()) {
+                return new Hl7ParsingTypeResult(prim);
+            }
+            return new Hl7ParsingTypeResult(new ArrayList<>());
+        } catch (IllegalArgumentException | HL7Exception | ArrayIndexOutOfBoundsException e) {
+            LOGGER.debug("Cannot extract value for type {} component {} subComponent {}  ", inputType, component,
+                    subComponent, e);
+            LOGGER.warn("Cannot extract value for type {} component {},subComponent {} ", inputType, component,
+                    subComponent);
+            return new Hl7ParsingTypeResult(new ArrayList<>());
+        }
+    }
+
+    // Terser can still create components of generic types, so its reads are serialized on the message
+    @Override
+    public ParsingResult<String> get(String segment, String field) {
+        synchronized (message) {
+            return super.get(segment, field);
+        }
+    }
+
+    @Override
+    public String getMessageId() {
+        synchronized (message) {
+            return super.getMessageId();
+        }
+    }
+
+    /**
+     * Returns the repetition of a child structure, or null if the group does not have it. Unlike
+     * {@link Group#get(String, int)}, a missing repetition is not created.
+     */
+    private static Structure getExisting(Group group, String name, int rep) throws HL7Exception {
+        Structure[] reps = group.getAll(name);
+        return rep < reps.length ? reps[rep] : null;
+    }
+
+    /**
+     * Returns a component of the type the way {@link Terser#getPrimitive(Type, int, int)} finds it, or null
+     * if the type does not have it. Missing components, extra components included, are not created.
+     */
+    private static Type getExisting(Type type, int component) {
+        if (type instanceof Variable) {
+            Type data = ((Variable) type).getData();
+            // Terser replaces the primitive data with an empty composite to read the later components
+            return data instanceof Primitive && component > 1 ? null : getExisting(data, component);
+        }
+        if (type == null || (type instanceof Primitive && component == 1)) {
+            return type;
+        }
+        int standardComponents = 1;
+        if (type instanceof Composite) {
+            Type[] components = ((Composite) type).getComponents();
+            if (component <= components.length) {
+                return components[component - 1];
+            }
+            if (type instanceof GenericComposite) {
+                return null;
+            }
+            standardComponents = components.length;
+        }
+        ExtraComponents extra = type.getExtraComponents();
+        int index = component - standardComponents - 1;
+        return index < extra.numComponents() ? extra.getComponent(index) : null;
+    }
+
+    private static Primitive getFirstPrimitive(Type type) {
+        if (type instanceof Primitive) {
+            return (Primitive) type;
+        } else if (type instanceof Variable) {
+            return getFirstPrimitive(((Variable) type).getData());
+        } else if (type instanceof Composite) {
+            Type[] components = ((Composite) type).getComponents();
+            return components.length > 0 ? getFirstPrimitive(components[0]) : null;
+        }
+        return null;
+    }
+
+}
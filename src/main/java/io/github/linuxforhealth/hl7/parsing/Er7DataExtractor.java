@@ -0,0 +1,157 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Group;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Structure;
+import ca.uhn.hl7v2.parser.CanonicalModelClassFactory;
+import ca.uhn.hl7v2.parser.ModelClassFactory;
+
+/**
+ * Lookup cache over an {@link Er7MessageIndex} for three kinds of string value: the SEG-field value of a
+ * segment that is a direct child of the message, the message type and the message control id. It is not a
+ * replacement for {@link HL7DataExtractor}: the message is still fully parsed by HAPI, and every other value,
+ * segments and typed fields included, is read from the parsed message.
+ * <p>
+ * Each method returns the same value as the matching {@link HL7DataExtractor} method, or null when the value
+ * cannot be read from the raw text with the same result, in which case the caller uses
+ * {@link HL7DataExtractor}. Values are read from the raw text only when they:
+ * <ul>
+ * <li>are not blank, not the HL7 null value "" and have no surrounding whitespace</li>
+ * <li>contain no escape sequence, since HAPI resolves them</li>
+ * <li>belong to a segment that can only be a direct child of the message, so the first occurrence in the
+ * text is the one HAPI finds</li>
+ * </ul>
+ */
+public class Er7DataExtractor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Er7DataExtractor.class);
+
+    private static final String MSH = "MSH";
+    private static final String HL7_NULL = "\"\"";
+    private static final int MESSAGE_TYPE_FIELD = 9;
+    private static final int MESSAGE_CONTROL_ID_FIELD = 10;
+
+    private static final ModelClassFactory MODEL_CLASS_FACTORY = new CanonicalModelClassFactory("2.6");
+    // Segments that can only be direct children of the message, by message class
+    private static final Map<Class<? extends Message>, Set<String>> ROOT_SEGMENTS = new ConcurrentHashMap<>();
+
+    private final Er7MessageIndex index;
+    private final Set<String> rootSegments;
+
+    /**
+     * @param index Index of the ER7 text the message was parsed from
+     * @param message The parsed message, used to find which segments are direct children of the message
+     */
+    public Er7DataExtractor(Er7MessageIndex index, Message message) {
+        Preconditions.checkArgument(index != null, "index cannot be null");
+        Preconditions.checkArgument(message != null, "message cannot be null");
+        this.index = index;
+        this.rootSegments = ROOT_SEGMENTS.computeIfAbsent(message.getClass(), Er7DataExtractor::findRootSegments);
+    }
+
+    /**
+     * Value of the first component and subcomponent of the first repetition of a field, see
+     * {@link HL7DataExtractor#get(String, String)}.
+     *
+     * @param segment Segment name
+     * @param field Field number
+     * @return String or null if the value must be read from the HAPI model
+     */
+    public String get(String segment, String field) {
+        if (!rootSegments.contains(segment) || !StringUtils.isNumeric(field)) {
+            return null;
+        }
+        int fieldNumber = Integer.parseInt(field);
+        int segmentIndex = index.findSegment(segment, 0);
+        if (fieldNumber < 1 || segmentIndex < 0) {
+            return null;
+        }
+        return plainValue(index.getValue(segmentIndex, fieldNumber, 0, 1, 1));
+    }
+
+    /**
+     * Message type, see {@link HL7DataExtractor#getMessageType()}.
+     *
+     * @return String or null if the value must be read from the HAPI model
+     */
+    public String getMessageType() {
+        int msh = index.findSegment(MSH, 0);
+        if (msh != 0) {
+            return null;
+        }
+        String code = plainValue(index.getValue(msh, MESSAGE_TYPE_FIELD, 0, 1, 1));
+        String event = plainValue(index.getValue(msh, MESSAGE_TYPE_FIELD, 0, 2, 1));
+        return code != null && event != null ? code + "_" + event : null;
+    }
+
+    /**
+     * Message control id, see {@link HL7DataExtractor#getMessageId()}.
+     *
+     * @return String or null if the value must be read from the HAPI model
+     */
+    public String getMessageId() {
+        int msh = index.findSegment(MSH, 0);
+        return msh == 0 ? plainValue(index.getValue(msh, MESSAGE_CONTROL_ID_FIELD, 0, 1, 1)) : null;
+    }
+
+    private String plainValue(CharSequence value) {
+        if (value == null || StringUtils.isBlank(value) || index.isEscaped(value) || HL7_NULL.contentEquals(value)
+                || Character.isWhitespace(value.charAt(0))
+                || Character.isWhitespace(value.charAt(value.length() - 1))) {
+            return null;
+        }
+        return value.toString();
+    }
+
+    private static Set<String> findRootSegments(Class<? extends Message> messageClass) {
+        try {
+            Message message = messageClass.getConstructor(ModelClassFactory.class).newInstance(MODEL_CLASS_FACTORY);
+            Set<String> root = new HashSet<>();
+            Set<String> nested = new HashSet<>();
+            for (String name : message.getNames()) {
+                Class<? extends Structure> childClass = message.getClass(name);
+                if (Group.class.isAssignableFrom(childClass)) {
+                    collectSegments((Group) message.get(name), nested);
+                } else {
+                    root.add(childClass.getSimpleName());
+                }
+            }
+            root.removeAll(nested);
+            return Collections.unmodifiableSet(root);
+        } catch (HL7Exception | ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warn("Cannot analyze message structure {}", messageClass.getSimpleName());
+            LOGGER.debug("Cannot analyze message structure {}", messageClass.getSimpleName(), e);
+            return Collections.emptySet();
+        }
+    }
+
+    private static void collectSegments(Group group, Set<String> segments) throws HL7Exception {
+        for (String name : group.getNames()) {
+            Class<? extends Structure> childClass = group.getClass(name);
+            if (Group.class.isAssignableFrom(childClass)) {
+                collectSegments((Group) group.get(name), segments);
+            } else {
+                segments.add(childClass.getSimpleName());
+            }
+        }
+    }
+
+}
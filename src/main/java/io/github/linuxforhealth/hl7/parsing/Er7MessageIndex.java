@@ -0,0 +1,331 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Flat, index based view of a single ER7 encoded HL7 message. The message is copied once into a char buffer
+ * and the start of every segment and every field is recorded as an offset into that buffer. Repetitions,
+ * components and subcomponents are located by scanning the bounds of one field, so no model objects are
+ * created. Values are returned as {@link CharSequence} slices of the buffer; they are the raw ER7 text, escape
+ * sequences are not resolved.
+ * <p>
+ * Fields are numbered as in HL7: MSH-1 is the field separator and MSH-2 the encoding characters. Segment,
+ * field and repetition indexes follow the HAPI conventions used by {@link HL7DataExtractor}: segment
+ * repetitions and field repetitions start at 0, fields, components and subcomponents start at 1.
+ * <p>
+ * Instances are immutable after construction and can be shared between threads.
+ */
+public class Er7MessageIndex {
+
+    private static final String MSH = "MSH";
+
+    private final char[] buffer;
+    private final char fieldSeparator;
+    private final char componentSeparator;
+    private final char repetitionSeparator;
+    private final char escapeCharacter;
+    private final char subComponentSeparator;
+
+    // Segment i spans [segmentStarts[i], segmentEnds[i]) and its fields are
+    // fieldStarts[firstFields[i]] .. fieldStarts[firstFields[i + 1] - 1], field j ending at fieldEnds[j]
+    private final int segmentCount;
+    private final int[] segmentStarts;
+    private final int[] segmentEnds;
+    private final int[] firstFields;
+    private final int[] fieldStarts;
+    private final int[] fieldEnds;
+
+    private Er7MessageIndex(char[] buffer) {
+        this.buffer = buffer;
+        this.fieldSeparator = buffer[3];
+        this.componentSeparator = buffer[4];
+        this.repetitionSeparator = buffer.length > 5 ? buffer[5] : 0;
+        this.escapeCharacter = buffer.length > 6 ? buffer[6] : 0;
+        this.subComponentSeparator = buffer.length > 7 ? buffer[7] : 0;
+
+        int[] segStarts = new int[16];
+        int[] segEnds = new int[16];
+        int[] segFields = new int[17];
+        int[] fStarts = new int[128];
+        int[] fEnds = new int[128];
+        int segments = 0;
+        int fields = 0;
+
+        int pos = 0;
+        while (pos < buffer.length) {
+            int end = pos;
+            while (end < buffer.length && buffer[end] != '\r' && buffer[end] != '\n') {
+                end++;
+            }
+            if (end > pos) {
+                if (segments == segStarts.length) {
+                    segStarts = Arrays.copyOf(segStarts, segments * 2);
+                    segEnds = Arrays.copyOf(segEnds, segments * 2);
+                    segFields = Arrays.copyOf(segFields, segments * 2 + 1);
+                }
+                segStarts[segments] = pos;
+                segEnds[segments] = end;
+                segFields[segments] = fields;
+                segments++;
+
+                // Field 0 is the segment name
+                int fieldStart = pos;
+                for (int i = pos; i <= end; i++) {
+                    if (i == end || buffer[i] == fieldSeparator) {
+                        if (fields == fStarts.length) {
+                            fStarts = Arrays.copyOf(fStarts, fields * 2);
+                            fEnds = Arrays.copyOf(fEnds, fields * 2);
+                        }
+                        fStarts[fields] = fieldStart;
+                        fEnds[fields] = i;
+                        fields++;
+                        fieldStart = i + 1;
+                    }
+                }
+            }
+            pos = end + 1;
+        }
+        segFields[segments] = fields;
+
+        this.segmentCount = segments;
+        this.segmentStarts = segStarts;
+        this.segmentEnds = segEnds;
+        this.firstFields = segFields;
+        this.fieldStarts = fStarts;
+        this.fieldEnds = fEnds;
+    }
+
+    /**
+     * Indexes the message.
+     *
+     * @param message Single ER7 message with segments separated by carriage returns or line feeds
+     * @return The index, or null if the message does not start with an MSH segment
+     */
+    public static Er7MessageIndex of(CharSequence message) {
+        if (message == null || message.length() < 5 || !MSH.contentEquals(message.subSequence(0, 3))) {
+            return null;
+        }
+        char[] buffer = new char[message.length()];
+        if (message instanceof String) {
+            ((String) message).getChars(0, buffer.length, buffer, 0);
+        } else {
+            for (int i = 0; i < buffer.length; i++) {
+                buffer[i] = message.charAt(i);
+            }
+        }
+        return new Er7MessageIndex(buffer);
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * @param segment Index of the segment in the message
+     * @return Segment name, such as PID
+     */
+    public CharSequence getSegmentName(int segment) {
+        checkSegment(segment);
+        int field = firstFields[segment];
+        return slice(fieldStarts[field], fieldEnds[field]);
+    }
+
+    /**
+     * @param segment Index of the segment in the message
+     * @return The whole segment text, without the segment terminator
+     */
+    public CharSequence getSegment(int segment) {
+        checkSegment(segment);
+        return slice(segmentStarts[segment], segmentEnds[segment]);
+    }
+
+    /**
+     * Finds a segment by name.
+     *
+     * @param name Segment name, such as PID
+     * @param rep Occurrence of the segment in the message, starting at 0
+     * @return Index of the segment, or -1 if the message has no such occurrence
+     */
+    public int findSegment(CharSequence name, int rep) {
+        Preconditions.checkArgument(name != null, "name cannot be null");
+        Preconditions.checkArgument(rep >= 0, "rep cannot be negative");
+        int found = 0;
+        for (int i = 0; i < segmentCount; i++) {
+            int field = firstFields[i];
+            if (regionEquals(fieldStarts[field], fieldEnds[field], name) && found++ == rep) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Number of the last field present in the segment.
+     *
+     * @param segment Index of the segment in the message
+     * @return Field count
+     */
+    public int getFieldCount(int segment) {
+        checkSegment(segment);
+        int count = firstFields[segment + 1] - firstFields[segment] - 1;
+        // MSH-1 is the separator between the segment name and MSH-2, it is not delimited itself
+        return isMsh(segment) ? count + 1 : count;
+    }
+
+    /**
+     * Raw value of a field, with all of its repetitions.
+     *
+     * @param segment Index of the segment in the message
+     * @param field Field number, starting at 1
+     * @return Field text, or null if the segment has no such field
+     */
+    public CharSequence getField(int segment, int field) {
+        checkSegment(segment);
+        Preconditions.checkArgument(field >= 1, "field must be greater than 0");
+        if (isMsh(segment) && field == 1) {
+            int start = segmentStarts[segment] + 3;
+            return slice(start, start + 1);
+        }
+        int index = fieldIndex(segment, field);
+        return index >= 0 ? slice(fieldStarts[index], fieldEnds[index]) : null;
+    }
+
+    /**
+     * Raw value of a subcomponent.
+     *
+     * @param segment Index of the segment in the message
+     * @param field Field number, starting at 1
+     * @param rep Field repetition, starting at 0
+     * @param component Component number, starting at 1
+     * @param subComponent Subcomponent number, starting at 1
+     * @return Value text, or null if the message has no such value. The text is empty if the value is present
+     *         but blank.
+     */
+    public CharSequence getValue(int segment, int field, int rep, int component, int subComponent) {
+        checkSegment(segment);
+        Preconditions.checkArgument(field >= 1, "field must be greater than 0");
+        Preconditions.checkArgument(rep >= 0, "rep cannot be negative");
+        Preconditions.checkArgument(component >= 1, "component must be greater than 0");
+        Preconditions.checkArgument(subComponent >= 1, "subComponent must be greater than 0");
+
+        if (isMsh(segment) && field <= 2) {
+            // MSH-1 and MSH-2 hold the delimiters and are not split
+            if (rep > 0 || component > 1 || subComponent > 1) {
+                return null;
+            }
+            return getField(segment, field);
+        }
+        int index = fieldIndex(segment, field);
+        if (index < 0) {
+            return null;
+        }
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+        long range = part(start, end, repetitionSeparator, rep);
+        range = narrow(range, componentSeparator, component - 1);
+        range = narrow(range, subComponentSeparator, subComponent - 1);
+        return range >= 0 ? slice((int) (range >>> 32), (int) range) : null;
+    }
+
+    /**
+     * Checks whether the text contains the escape character of the message, in which case the HAPI value of
+     * the text differs from the raw text.
+     *
+     * @param text Text returned by this index
+     * @return True if the text contains the escape character
+     */
+    public boolean isEscaped(CharSequence text) {
+        if (text == null || escapeCharacter == 0) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == escapeCharacter) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public char getFieldSeparator() {
+        return fieldSeparator;
+    }
+
+    public char getComponentSeparator() {
+        return componentSeparator;
+    }
+
+    public char getRepetitionSeparator() {
+        return repetitionSeparator;
+    }
+
+    public char getEscapeCharacter() {
+        return escapeCharacter;
+    }
+
+    public char getSubComponentSeparator() {
+        return subComponentSeparator;
+    }
+
+    private int fieldIndex(int segment, int field) {
+        // For MSH the segment name is followed directly by MSH-2, one position earlier than other segments
+        int index = firstFields[segment] + (isMsh(segment) ? field - 1 : field);
+        return index < firstFields[segment + 1] ? index : -1;
+    }
+
+    private boolean isMsh(int segment) {
+        int field = firstFields[segment];
+        return regionEquals(fieldStarts[field], fieldEnds[field], MSH);
+    }
+
+    private long narrow(long range, char separator, int index) {
+        if (range < 0) {
+            return range;
+        }
+        return part((int) (range >>> 32), (int) range, separator, index);
+    }
+
+    // Bounds of the index-th part of [start, end) split on the separator, packed as start << 32 | end
+    private long part(int start, int end, char separator, int index) {
+        int partStart = start;
+        int found = 0;
+        for (int i = start; i <= end; i++) {
+            if (i == end || (separator != 0 && buffer[i] == separator)) {
+                if (found == index) {
+                    return ((long) partStart << 32) | i;
+                }
+                found++;
+                partStart = i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean regionEquals(int start, int end, CharSequence text) {
+        if (end - start != text.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (buffer[i] != text.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private CharSequence slice(int start, int end) {
+        return CharBuffer.wrap(buffer, start, end - start).asReadOnlyBuffer();
+    }
+
+    private void checkSegment(int segment) {
+        Preconditions.checkArgument(segment >= 0 && segment < segmentCount, "segment out of range");
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+
+/**
+ * Bounded pool of pre-configured {@link HL7HapiParser} instances. A HAPI context and its parser are
+ * expensive to create and not safe to share between threads, so each parse borrows a parser from the pool
+ * and returns it when done. Parsers are created on demand up to the pool size; once all are in use,
+ * callers wait for one to be returned. The time spent waiting is recorded and exposed through the
+ * statistics getters.
+ */
+public class HL7HapiParserPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HL7HapiParserPool.class);
+
+    // Minimal message used to load the v2.6 model classes when a parser is created
+    private static final String WARM_UP_MESSAGE = "MSH|^~\\&|||||20200101000000||ADT^A01^ADT_A01|1|P|2.6\rPID|1\r";
+
+    private static final HL7HapiParserPool DEFAULT_POOL = new HL7HapiParserPool(
+            Runtime.getRuntime().availableProcessors());
+
+    private final int maxSize;
+    private final BlockingQueue<HL7HapiParser> idleParsers;
+    private final AtomicInteger createdParsers = new AtomicInteger();
+
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder waitCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * Creates a pool holding at most maxSize parsers. One parser is created and warmed up immediately.
+     *
+     * @param maxSize Maximum number of parsers, and so of concurrent parses
+     */
+    public HL7HapiParserPool(int maxSize) {
+        Preconditions.checkArgument(maxSize > 0, "maxSize must be greater than 0");
+        this.maxSize = maxSize;
+        this.idleParsers = new ArrayBlockingQueue<>(maxSize);
+        HL7HapiParser parser = tryCreateParser();
+        if (parser != null) {
+            idleParsers.offer(parser);
+        }
+    }
+
+    /**
+     * Returns the pool shared by all converters, sized to the number of available processors.
+     *
+     * @return {@link HL7HapiParserPool}
+     */
+    public static HL7HapiParserPool getInstance() {
+        return DEFAULT_POOL;
+    }
+
+    /**
+     * Parses the HL7 message using a parser borrowed from the pool.
+     *
+     * @param message HL7 message in ER7 or XML encoding
+     * @return Parsed {@link Message}
+     * @throws HL7Exception - if the message cannot be parsed
+     */
+    public Message parse(String message) throws HL7Exception {
+        HL7HapiParser parser = borrow();
+        try {
+            return parser.getParser().parse(message);
+        } finally {
+            release(parser);
+        }
+    }
+
+    /**
+     * Borrows a parser from the pool, creating one if the pool has not yet reached its maximum size, or
+     * waiting for one to be released otherwise. Every borrowed parser must be returned with
+     * {@link #release(HL7HapiParser)}.
+     *
+     * @return {@link HL7HapiParser}
+     */
+    public HL7HapiParser borrow() {
+        borrowCount.increment();
+        HL7HapiParser parser = idleParsers.poll();
+        if (parser == null) {
+            parser = tryCreateParser();
+        }
+        if (parser == null) {
+            parser = waitForParser();
+        }
+        return parser;
+    }
+
+    /**
+     * Returns a parser previously obtained with {@link #borrow()} to the pool.
+     *
+     * @param parser {@link HL7HapiParser}
+     */
+    public void release(HL7HapiParser parser) {
+        if (parser != null && !idleParsers.offer(parser)) {
+            LOGGER.warn("Parser released to a full pool, discarding it.");
+        }
+    }
+
+    private HL7HapiParser tryCreateParser() {
+        int created = createdParsers.get();
+        while (created < maxSize) {
+            if (createdParsers.compareAndSet(created, created + 1)) {
+                try {
+                    return createParser();
+                } catch (RuntimeException e) {
+                    createdParsers.decrementAndGet();
+                    throw e;
+                }
+            }
+            created = createdParsers.get();
+        }
+        return null;
+    }
+
+    private HL7HapiParser waitForParser() {
+        long start = System.nanoTime();
+        try {
+            return idleParsers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an HL7 parser.", e);
+        } finally {
+            long waited = System.nanoTime() - start;
+            waitCount.increment();
+            totalWaitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+        }
+    }
+
+    private static HL7HapiParser createParser() {
+        HL7HapiParser parser = new HL7HapiParser();
+        try {
+            parser.getParser().parse(WARM_UP_MESSAGE);
+        } catch (HL7Exception e) {
+            LOGGER.warn("Failure warming up HL7 parser.");
+            LOGGER.debug("Failure warming up HL7 parser.", e);
+        }
+        return parser;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Number of parsers created so far.
+     *
+     * @return int
+     */
+    public int getCreatedCount() {
+        return createdParsers.get();
+    }
+
+    /**
+     * Number of times a parser was borrowed.
+     *
+     * @return long
+     */
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    /**
+     * Number of borrows that had to wait for a parser to be released.
+     *
+     * @return long
+     */
+    public long getWaitCount() {
+        return waitCount.sum();
+    }
+
+    /**
+     * Total time, in nanoseconds, spent waiting for a parser to be released.
+     *
+     * @return long
+     */
+    public long getTotalWaitTimeNanos() {
+        return totalWaitNanos.sum();
+    }
+
+    /**
+     * Longest single wait, in nanoseconds, for a parser to be released.
+     *
+     * @return long
+     */
+    public long getMaxWaitTimeNanos() {
+        return maxWaitNanos.get();
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import io.github.linuxforhealth.core.config.MessageStructureLogging;
+
+/**
+ * Logs the structure of parsed HL7 messages according to the configured {@link MessageStructureLogging}
+ * mode. The structure is only rendered when a message is selected for logging and the INFO level is
+ * enabled; field values are truncated so the output does not carry message content.
+ */
+public class MessageStructureLogger {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageStructureLogger.class);
+
+    private final MessageStructureLogging mode;
+    private final int sampleRate;
+    private final AtomicLong messageCount = new AtomicLong();
+
+    /**
+     * @param mode When to log message structures
+     * @param sampleRate For {@link MessageStructureLogging#SAMPLED}, log one in every sampleRate messages
+     */
+    public MessageStructureLogger(MessageStructureLogging mode, int sampleRate) {
+        Preconditions.checkArgument(mode != null, "mode cannot be null");
+        Preconditions.checkArgument(sampleRate > 0, "sampleRate must be greater than 0");
+        this.mode = mode;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Logs the message structure if the mode selects this message.
+     *
+     * @param message Parsed HL7 message
+     * @param failed True if the conversion of the message failed
+     */
+    public void log(Message message, boolean failed) {
+        if (message == null || mode == MessageStructureLogging.OFF || !LOGGER.isInfoEnabled()) {
+            return;
+        }
+        boolean selected;
+        switch (mode) {
+            case ALWAYS:
+                selected = true;
+                break;
+            case ON_FAILURE:
+                selected = failed;
+                break;
+            case SAMPLED:
+                selected = messageCount.getAndIncrement() % sampleRate == 0;
+                break;
+            default:
+                selected = false;
+        }
+        if (selected) {
+            LOGGER.info("HL7_MESSAGE_STRUCTURE=\n{}", new StructureRenderer(message));
+        }
+    }
+
+    // Defers rendering until the logging framework formats the message
+    private static class StructureRenderer {
+        private final Message message;
+
+        StructureRenderer(Message message) {
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            try {
+                String messageStructureInfo = message.printStructure();
+                StringBuilder output = new StringBuilder();
+                String[] messageStructureInfoLines = messageStructureInfo.split(System.lineSeparator());
+                for (String line : messageStructureInfoLines) {
+                    if (!line.contains("|")) {
+                        output.append(line);
+                    } else {
+                        int firstDash = line.indexOf("-");
+                        output.append(line.substring(0, firstDash + 5));
+                    }
+                    output.append("\n");
+                }
+                return output.toString();
+            } catch (HL7Exception e) {
+                LOGGER.debug("Error printing message structure.", e);
+                return "Error printing message structure.";
+            }
+        }
+    }
+
+}
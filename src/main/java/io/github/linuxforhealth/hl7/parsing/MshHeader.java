@@ -0,0 +1,267 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+/**
+ * Reads the separators and the message type (MSH-9), message control id (MSH-10) and version id (MSH-12) of
+ * an ER7 encoded HL7 message straight from the raw text, without parsing the message with HAPI. This is
+ * enough to route messages, or to reject message types that are not converted, before any parsing work.
+ * <p>
+ * Scanning does not allocate: it records the offsets of the fields in the message text, and values are only
+ * copied out when a getter is called. An instance can be reused for many messages by calling
+ * {@link #scan(CharSequence)} for each one; instances are not thread safe.
+ */
+public class MshHeader {
+
+    private static final String MSH = "MSH";
+    private static final int MESSAGE_TYPE_FIELD = 9;
+    private static final int MESSAGE_CONTROL_ID_FIELD = 10;
+    private static final int VERSION_ID_FIELD = 12;
+
+    private CharSequence message;
+    private char fieldSeparator;
+    private char componentSeparator;
+    private char repetitionSeparator;
+    private char escapeCharacter;
+    // Start and end offsets of MSH-9 components 1 to 3, MSH-10 and MSH-12; -1 when missing
+    private final int[] starts = new int[5];
+    private final int[] ends = new int[5];
+
+    private static final int MESSAGE_CODE = 0;
+    private static final int TRIGGER_EVENT = 1;
+    private static final int MESSAGE_STRUCTURE = 2;
+    private static final int MESSAGE_CONTROL_ID = 3;
+    private static final int VERSION_ID = 4;
+
+    /**
+     * Scans the MSH segment of the message.
+     *
+     * @param message ER7 encoded HL7 message
+     * @return The header, or null if the message does not start with an MSH segment
+     */
+    public static MshHeader parse(CharSequence message) {
+        MshHeader header = new MshHeader();
+        return header.scan(message) ? header : null;
+    }
+
+    /**
+     * Scans the MSH segment of the message, replacing the values of the previous scan. Leading whitespace is
+     * skipped.
+     *
+     * @param message ER7 encoded HL7 message
+     * @return True if the message starts with an MSH segment
+     */
+    public boolean scan(CharSequence message) {
+        clear();
+        if (message == null) {
+            return false;
+        }
+        int length = message.length();
+        int pos = 0;
+        while (pos < length && Character.isWhitespace(message.charAt(pos))) {
+            pos++;
+        }
+        if (pos + 7 >= length || !startsWithMsh(message, pos)) {
+            return false;
+        }
+        this.message = message;
+        fieldSeparator = message.charAt(pos + 3);
+        componentSeparator = message.charAt(pos + 4);
+        repetitionSeparator = message.charAt(pos + 5);
+        escapeCharacter = message.charAt(pos + 6);
+
+        // MSH-1 is the field separator itself, so the field after it is MSH-2
+        int field = 2;
+        int fieldStart = pos + 4;
+        for (int i = fieldStart; i <= length; i++) {
+            char c = i < length ? message.charAt(i) : '\r';
+            if (c == fieldSeparator || c == '\r' || c == '\n') {
+                recordField(field, fieldStart, i);
+                if (c != fieldSeparator || field >= VERSION_ID_FIELD) {
+                    break;
+                }
+                field++;
+                fieldStart = i + 1;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWithMsh(CharSequence message, int pos) {
+        for (int i = 0; i < MSH.length(); i++) {
+            if (message.charAt(pos + i) != MSH.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void recordField(int field, int start, int end) {
+        if (field == MESSAGE_TYPE_FIELD) {
+            // Only the first repetition, split into message code, trigger event and message structure
+            int component = MESSAGE_CODE;
+            int componentStart = start;
+            for (int i = start; i <= end && component <= MESSAGE_STRUCTURE; i++) {
+                char c = i < end ? message.charAt(i) : repetitionSeparator;
+                if (c == componentSeparator || c == repetitionSeparator) {
+                    setRange(component, componentStart, i);
+                    if (c == repetitionSeparator) {
+                        break;
+                    }
+                    component++;
+                    componentStart = i + 1;
+                }
+            }
+        } else if (field == MESSAGE_CONTROL_ID_FIELD) {
+            setRange(MESSAGE_CONTROL_ID, start, end);
+        } else if (field == VERSION_ID_FIELD) {
+            setRange(VERSION_ID, start, firstComponentEnd(start, end));
+        }
+    }
+
+    private int firstComponentEnd(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (message.charAt(i) == componentSeparator) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private void setRange(int value, int start, int end) {
+        if (end > start) {
+            starts[value] = start;
+            ends[value] = end;
+        }
+    }
+
+    private void clear() {
+        message = null;
+        fieldSeparator = 0;
+        componentSeparator = 0;
+        repetitionSeparator = 0;
+        escapeCharacter = 0;
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = -1;
+            ends[i] = -1;
+        }
+    }
+
+    private String value(int value) {
+        return starts[value] >= 0 ? message.subSequence(starts[value], ends[value]).toString() : null;
+    }
+
+    // Values with escape sequences or surrounding whitespace are left to the full parser
+    private boolean isPlain(int value) {
+        if (starts[value] < 0) {
+            return false;
+        }
+        for (int i = starts[value]; i < ends[value]; i++) {
+            char c = message.charAt(i);
+            if (c == escapeCharacter || Character.isWhitespace(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public char getFieldSeparator() {
+        return fieldSeparator;
+    }
+
+    public char getComponentSeparator() {
+        return componentSeparator;
+    }
+
+    /**
+     * Message code, MSH-9.1.
+     *
+     * @return String or null if missing
+     */
+    public String getMessageCode() {
+        return value(MESSAGE_CODE);
+    }
+
+    /**
+     * Trigger event, MSH-9.2.
+     *
+     * @return String or null if missing
+     */
+    public String getTriggerEvent() {
+        return value(TRIGGER_EVENT);
+    }
+
+    /**
+     * Message structure, MSH-9.3.
+     *
+     * @return String or null if missing
+     */
+    public String getMessageStructure() {
+        return value(MESSAGE_STRUCTURE);
+    }
+
+    /**
+     * Message control id, MSH-10.
+     *
+     * @return String or null if missing
+     */
+    public String getMessageControlId() {
+        return value(MESSAGE_CONTROL_ID);
+    }
+
+    /**
+     * Version id, MSH-12.1.
+     *
+     * @return String or null if missing
+     */
+    public String getVersionId() {
+        return value(VERSION_ID);
+    }
+
+    /**
+     * Message type in the form used to select message templates, message code and trigger event joined by an
+     * underscore (ADT_A01), the same as {@link HL7DataExtractor#getMessageType(ca.uhn.hl7v2.model.Message)}
+     * returns for the parsed message.
+     *
+     * @return String or null if the message code or trigger event is missing or cannot be read without
+     *         parsing the message
+     */
+    public String getMessageType() {
+        if (!isPlain(MESSAGE_CODE) || !isPlain(TRIGGER_EVENT)) {
+            return null;
+        }
+        return getMessageCode() + "_" + getTriggerEvent();
+    }
+
+    /**
+     * Checks the message type without allocating.
+     *
+     * @param messageType Message type such as ADT_A01
+     * @return True if {@link #getMessageType()} would return the given message type
+     */
+    public boolean isMessageType(CharSequence messageType) {
+        if (messageType == null || !isPlain(MESSAGE_CODE) || !isPlain(TRIGGER_EVENT)) {
+            return false;
+        }
+        int codeLength = ends[MESSAGE_CODE] - starts[MESSAGE_CODE];
+        int triggerLength = ends[TRIGGER_EVENT] - starts[TRIGGER_EVENT];
+        if (messageType.length() != codeLength + 1 + triggerLength || messageType.charAt(codeLength) != '_') {
+            return false;
+        }
+        return regionMatches(messageType, 0, MESSAGE_CODE)
+                && regionMatches(messageType, codeLength + 1, TRIGGER_EVENT);
+    }
+
+    private boolean regionMatches(CharSequence text, int offset, int value) {
+        for (int i = starts[value]; i < ends[value]; i++) {
+            if (text.charAt(offset++) != message.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.Version;
+import ca.uhn.hl7v2.model.GenericMessage;
+import ca.uhn.hl7v2.model.Group;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Structure;
+import ca.uhn.hl7v2.parser.CanonicalModelClassFactory;
+import ca.uhn.hl7v2.parser.ModelClassFactory;
+
+/**
+ * Removes the segments no template reads from an ER7 message before it is parsed, so HAPI does not build
+ * their object tree. Only segments whose removal cannot change where HAPI places the remaining segments are
+ * removed:
+ * <ul>
+ * <li>segments that are not part of the message structure, such as Z-segments, which HAPI adds as
+ * non-standard segments at the current position</li>
+ * <li>segments of the message structure that cannot start a group, when no segment after them is kept</li>
+ * </ul>
+ * Segments that can start a group are always kept, since removing one could move the following segments into
+ * a different group. If the message structure cannot be determined, the message is left unchanged.
+ */
+public class UnusedSegmentFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnusedSegmentFilter.class);
+
+    private static final ModelClassFactory MODEL_CLASS_FACTORY = new CanonicalModelClassFactory("2.6");
+    private static final StructureSegments UNKNOWN_STRUCTURE = new StructureSegments(Collections.emptySet(),
+            Collections.emptySet());
+    private static final Map<String, StructureSegments> STRUCTURES = new ConcurrentHashMap<>();
+
+    private final Set<String> usedSegments;
+
+    /**
+     * @param usedSegments Names of the segments read by the templates for the message type
+     */
+    public UnusedSegmentFilter(Set<String> usedSegments) {
+        Preconditions.checkArgument(usedSegments != null, "usedSegments cannot be null");
+        this.usedSegments = new HashSet<>(usedSegments);
+    }
+
+    /**
+     * Removes the unused segments from the message.
+     *
+     * @param message Single ER7 message with segments separated by carriage returns
+     * @param header Header scanned from the message
+     * @return The message without unused segments, or the same message if none can be removed
+     */
+    public String filter(String message, MshHeader header) {
+        if (message == null || header == null) {
+            return message;
+        }
+        StructureSegments structure = getStructureSegments(header);
+        if (structure == UNKNOWN_STRUCTURE) {
+            return message;
+        }
+
+        List<String> segments = new ArrayList<>();
+        for (String segment : message.split("[\r\n]+")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        boolean[] keep = new boolean[segments.size()];
+        boolean laterKept = false;
+        int removed = 0;
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            String name = segmentName(segments.get(i), header.getFieldSeparator());
+            if (usedSegments.contains(name) || structure.leaders.contains(name)) {
+                keep[i] = true;
+            } else if (structure.segments.contains(name)) {
+                keep[i] = laterKept;
+            }
+            laterKept |= keep[i];
+            if (!keep[i]) {
+                removed++;
+            }
+        }
+        if (removed == 0) {
+            return message;
+        }
+
+        StringBuilder filtered = new StringBuilder(message.length());
+        for (int i = 0; i < segments.size(); i++) {
+            if (keep[i]) {
+                filtered.append(segments.get(i)).append('\r');
+            }
+        }
+        LOGGER.debug("Removed {} unused segments before parsing.", removed);
+        return filtered.toString();
+    }
+
+    private static String segmentName(String segment, char fieldSeparator) {
+        int end = segment.indexOf(fieldSeparator);
+        return end >= 0 ? segment.substring(0, end) : segment;
+    }
+
+    private static StructureSegments getStructureSegments(MshHeader header) {
+        String structureName = getStructureName(header);
+        if (structureName == null) {
+            return UNKNOWN_STRUCTURE;
+        }
+        return STRUCTURES.computeIfAbsent(structureName, UnusedSegmentFilter::analyzeStructure);
+    }
+
+    // HAPI uses MSH-9.3 when present, and otherwise looks up the structure for the event in the message version
+    private static String getStructureName(MshHeader header) {
+        if (header.getMessageStructure() != null) {
+            return header.getMessageStructure();
+        }
+        String messageType = header.getMessageType();
+        if (messageType == null) {
+            return null;
+        }
+        Version version = header.getVersionId() != null ? Version.versionOf(header.getVersionId()) : null;
+        try {
+            return MODEL_CLASS_FACTORY.getMessageStructureForEvent(messageType,
+                    version != null ? version : Version.V26);
+        } catch (HL7Exception e) {
+            LOGGER.debug("No message structure for {}", messageType, e);
+            return null;
+        }
+    }
+
+    private static StructureSegments analyzeStructure(String structureName) {
+        try {
+            Class<? extends Message> messageClass = MODEL_CLASS_FACTORY.getMessageClass(structureName, "2.6", true);
+            // HAPI returns a generic message class for structures it does not define
+            if (messageClass == null || GenericMessage.class.isAssignableFrom(messageClass)) {
+                return UNKNOWN_STRUCTURE;
+            }
+            Message message = messageClass.getConstructor(ModelClassFactory.class).newInstance(MODEL_CLASS_FACTORY);
+            Set<String> segments = new HashSet<>();
+            Set<String> leaders = new HashSet<>();
+            collectSegments(message, segments, leaders);
+            return new StructureSegments(segments, leaders);
+        } catch (HL7Exception | ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warn("Cannot analyze message structure {}", structureName);
+            LOGGER.debug("Cannot analyze message structure {}", structureName, e);
+            return UNKNOWN_STRUCTURE;
+        }
+    }
+
+    /**
+     * Collects the segments of the group and of its nested groups, and the segments that can start each group:
+     * every child up to and including the first required one.
+     *
+     * @return The segments that can start the group
+     */
+    private static Set<String> collectSegments(Group group, Set<String> segments, Set<String> leaders)
+            throws HL7Exception {
+        Set<String> groupLeaders = new HashSet<>();
+        boolean leading = true;
+        for (String name : group.getNames()) {
+            Class<? extends Structure> childClass = group.getClass(name);
+            Set<String> childLeaders;
+            if (Group.class.isAssignableFrom(childClass)) {
+                childLeaders = collectSegments((Group) group.get(name), segments, leaders);
+            } else {
+                childLeaders = Collections.singleton(childClass.getSimpleName());
+                segments.add(childClass.getSimpleName());
+            }
+            if (leading) {
+                groupLeaders.addAll(childLeaders);
+                leading = !group.isRequired(name);
+            }
+        }
+        leaders.addAll(groupLeaders);
+        return groupLeaders;
+    }
+
+    private static class StructureSegments {
+        private final Set<String> segments;
+        private final Set<String> leaders;
+
+        StructureSegments(Set<String> segments, Set<String> leaders) {
+            this.segments = segments;
+            this.leaders = leaders;
+        }
+    }
+
+}
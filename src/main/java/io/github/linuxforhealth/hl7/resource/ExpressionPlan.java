@@ -0,0 +1,110 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.resource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.base.Preconditions;
+
+import io.github.linuxforhealth.api.Expression;
+
+/**
+ * Immutable evaluation order of the expressions of a resource template, compiled once when the template is
+ * loaded. The expressions evaluated with the resource come first, in the iteration order of the template
+ * expression map, which is the order they were evaluated in before the plan existed. The expressions marked
+ * evaluate later are kept apart, since they are only evaluated once all resources of the message are
+ * generated. The name each expression writes its value to is resolved up front.
+ */
+public final class ExpressionPlan {
+
+    private static final String KEY_NAME_SUFFIX = "KEY_NAME_SUFFIX";
+
+    private final List<Step> steps;
+    private final Map<String, Expression> evaluateLater;
+
+    private ExpressionPlan(List<Step> steps, Map<String, Expression> evaluateLater) {
+        this.steps = steps;
+        this.evaluateLater = evaluateLater;
+    }
+
+    /**
+     * Compiles the plan for the expressions of a resource template.
+     *
+     * @param expressions Expressions by name
+     * @return {@link ExpressionPlan}
+     */
+    public static ExpressionPlan compile(Map<String, Expression> expressions) {
+        Preconditions.checkArgument(expressions != null, "expressions cannot be null");
+        List<Step> steps = new ArrayList<>(expressions.size());
+        Map<String, Expression> evaluateLater = new HashMap<>();
+        for (Map.Entry<String, Expression> entry : expressions.entrySet()) {
+            if (entry.getValue().isEvaluateLater()) {
+                evaluateLater.put(entry.getKey(), entry.getValue());
+            } else {
+                steps.add(new Step(entry.getKey(), entry.getValue()));
+            }
+        }
+        return new ExpressionPlan(Collections.unmodifiableList(steps), Collections.unmodifiableMap(evaluateLater));
+    }
+
+    /**
+     * @return Expressions evaluated with the resource, in evaluation order
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return Expressions evaluated after all resources of the message are generated
+     */
+    public Map<String, Expression> getEvaluateLater() {
+        return evaluateLater;
+    }
+
+    /**
+     * One expression of the plan, with the name of the resource value it sets.
+     */
+    public static final class Step {
+        private final String name;
+        private final Expression expression;
+        private final String keyName;
+        private final boolean keyNameSuffixed;
+
+        private Step(String name, Expression expression) {
+            this.name = name;
+            this.expression = expression;
+            String[] keyComponents = StringUtils.split(name, "_", 2);
+            this.keyName = keyComponents[0];
+            this.keyNameSuffixed = keyComponents.length == 2 && KEY_NAME_SUFFIX.equalsIgnoreCase(keyComponents[1]);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Expression getExpression() {
+            return expression;
+        }
+
+        /**
+         * Name of the resource value the expression sets: the expression name up to the first underscore,
+         * followed by the suffix if the expression name ends with _KEY_NAME_SUFFIX.
+         *
+         * @param suffix Value of the KEY_NAME_SUFFIX context variable, or null
+         * @return String
+         */
+        public String getKeyName(String suffix) {
+            return keyNameSuffixed ? keyName + suffix : keyName;
+        }
+    }
+
+}
@@ -5,6 +5,7 @@
  */
 package io.github.linuxforhealth.hl7.resource;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -31,6 +32,7 @@ public class HL7DataBasedResourceModel implements ResourceModel {
     private static final Logger LOGGER = LoggerFactory.getLogger(HL7DataBasedResourceModel.class);
 
     private Map<String, Expression> expressions;
+    private ExpressionPlan plan;
     private String spec;
 
     private String name;
@@ -44,8 +46,10 @@ public class HL7DataBasedResourceModel implements ResourceModel {
 
     public HL7DataBasedResourceModel(String name, Map<String, Expression> expressions,
             String hl7spec) {
-        this.expressions = new HashMap<>();
-        this.expressions.putAll(expressions);
+        Map<String, Expression> expressionMap = new HashMap<>();
+        expressionMap.putAll(expressions);
+        this.expressions = Collections.unmodifiableMap(expressionMap);
+        this.plan = ExpressionPlan.compile(this.expressions);
         this.spec = hl7spec;
 
         this.name = name;
@@ -69,7 +73,7 @@ public class HL7DataBasedResourceModel implements ResourceModel {
         try {
 
             ResourceEvaluationResult result = ExpressionUtility.evaluate(dataSource, context, baseValue,
-                    this.expressions);
+                    this.plan);
 
             if (result != null && !result.getResolveValues().isEmpty()) {
                 String groupId = getGroupId(context);
@@ -100,6 +104,13 @@ public class HL7DataBasedResourceModel implements ResourceModel {
         return null;
     }
 
+    /**
+     * @return Expressions of the model compiled in evaluation order
+     */
+    public ExpressionPlan getPlan() {
+        return plan;
+    }
+
     public String getSpec() {
         return spec;
     }
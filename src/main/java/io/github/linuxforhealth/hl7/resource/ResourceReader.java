@@ -14,6 +14,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -23,6 +24,12 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.InjectableValues;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import io.github.linuxforhealth.api.ResourceModel;
 import io.github.linuxforhealth.core.Constants;
 import io.github.linuxforhealth.core.ObjectMapperUtil;
@@ -36,6 +43,8 @@ import io.github.linuxforhealth.hl7.message.HL7MessageModel;
  * resources are loaded from that path. If the configuration is not defined then default path would
  * be used.
  * 
+ * Resource models are parsed once per template path and shared by every expression that generates or
+ * references them. The models are immutable once built, so one instance serves all conversions.
  *
  * @author pbhallam
  */
@@ -47,6 +56,12 @@ public class ResourceReader {
 
   private final ConverterConfiguration converterConfig = ConverterConfiguration.getInstance();
 
+  // Resource models by template path. A path requested by several threads at once is loaded by one of
+  // them while the others wait for its model. Models referenced while a model is loading, such as
+  // datatype/Identifier, are loaded by the same thread.
+  private final LoadingCache<String, ResourceModel> resourceModels =
+      CacheBuilder.newBuilder().recordStats().build(CacheLoader.from(this::loadResourceModel));
+
   /**
    * Loads a file resource configuration, returning a String
    * 
@@ -205,14 +220,31 @@ public class ResourceReader {
 
   }
 
+  /**
+   * Returns the resource model of the template, parsing the template the first time the path is
+   * requested.
+   * 
+   * @param path Template path relative to the hl7 folder, without extension, e.g. resource/Patient
+   * @return Shared {@link ResourceModel} of the template
+   */
   public ResourceModel generateResourceModel(String path) {
     Preconditions.checkArgument(StringUtils.isNotBlank(path), "Path for resource cannot be blank");
+    try {
+      return resourceModels.get(path);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalArgumentException("Error encountered in processing the template" + path, e.getCause());
+    }
+  }
+
+  private ResourceModel loadResourceModel(String path) {
     String templateFileContent = getResourceInHl7Folder(path + ".yml");
 
     try {
+      // The reader carries its own injectable values, so models loaded at the same time do not share them
       InjectableValues injValues = new InjectableValues.Std().addValue("resourceName", path);
-      return ObjectMapperUtil.getYAMLInstance().setInjectableValues(injValues)
-          .readValue(templateFileContent, HL7DataBasedResourceModel.class);
+      return ObjectMapperUtil.getYAMLInstance().readerFor(HL7DataBasedResourceModel.class).with(injValues)
+          .readValue(templateFileContent);
 
     } catch (IOException e) {
       throw new IllegalArgumentException("Error encountered in processing the template" + path, e);
@@ -220,14 +252,21 @@ public class ResourceReader {
 
   }
 
-  public static ResourceReader getInstance() {
+  /**
+   * @return Statistics of the resource model cache: hits are models reused instead of parsed again
+   */
+  public CacheStats getResourceModelCacheStats() {
+    return resourceModels.stats();
+  }
+
+  public static synchronized ResourceReader getInstance() {
     if (reader == null) {
       reader = new ResourceReader();
     }
     return reader;
   }
 
-  public static void reset() {
+  public static synchronized void reset() {
     reader = null;
   }
 
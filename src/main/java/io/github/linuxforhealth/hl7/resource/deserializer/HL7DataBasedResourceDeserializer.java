@@ -127,8 +127,14 @@ public class HL7DataBasedResourceDeserializer extends JsonDeserializer<HL7DataBa
       try {
         Constructor<?> ctor = expAttr.getExpressionType().getEvaluator().getConstructor(ExpressionAttributes.class);
         return (Expression) ctor.newInstance(expAttr);
+      } catch (InvocationTargetException e1) {
+        // An expression that cannot be built, such as an unsupported JEXL expression, fails the template
+        if (e1.getCause() instanceof IllegalArgumentException) {
+          throw new IllegalArgumentException("Invalid expression " + expAttr.getName(), e1.getCause());
+        }
+        throw new IllegalStateException("Error encountered while creating expression object.", e1);
       } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | IllegalArgumentException
-          | InvocationTargetException | SecurityException e1) {
+          | SecurityException e1) {
         throw new IllegalStateException("Error encountered while creating expression object.", e1);
       }
 
@@ -28,6 +28,7 @@ import io.github.linuxforhealth.core.exception.RequiredConstraintFailureExceptio
 import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
 import io.github.linuxforhealth.hl7.message.HL7MessageData;
+import io.github.linuxforhealth.hl7.resource.ExpressionPlan;
 import io.github.linuxforhealth.hl7.resource.PendingExpressionState;
 import io.github.linuxforhealth.hl7.resource.ResourceEvaluationResult;
 
@@ -54,29 +55,37 @@ public class ExpressionUtility {
     public static ResourceEvaluationResult evaluate(InputDataExtractor dataSource,
             Map<String, EvaluationResult> context, EvaluationResult baseValue,
             Map<String, Expression> expressionMap) {
+        return evaluate(dataSource, context, baseValue, ExpressionPlan.compile(expressionMap));
+    }
+
+    /**
+     * Evaluates the compiled expressions of a resource and generates ResourceEvaluationResult object.
+     * 
+     * @param dataSource The data extractor to be used
+     * @param context The context in use
+     * @param baseValue The value to evaluate
+     * @param plan Compiled expressions
+     * @return {@link ResourceEvaluationResult}
+     */
+    public static ResourceEvaluationResult evaluate(InputDataExtractor dataSource,
+            Map<String, EvaluationResult> context, EvaluationResult baseValue, ExpressionPlan plan) {
 
         try {
-            Map<String, Expression> expressionsToEvaluateLater = new HashMap<>();
             Map<String, EvaluationResult> localContext = new HashMap<>(context);
             localContext.put(Constants.NULL_VAR_NAME, new EmptyEvaluationResult());
             // initialize the map and list to collect values
             List<ResourceValue> additionalResolveValues = new ArrayList<>();
             Map<String, Object> resolveValues = new HashMap<>();
+            String keyNameSuffix = getKeyNameSuffix(localContext);
 
-            for (Entry<String, Expression> entry : expressionMap.entrySet()) {
-
-                Expression exp = entry.getValue();
-                LOGGER.debug(EVALUATING, entry.getKey(), entry.getValue());
-                if (exp.isEvaluateLater()) {
-                    expressionsToEvaluateLater.put(entry.getKey(), entry.getValue());
-                } else {
-                    processExpression(dataSource, baseValue, localContext, additionalResolveValues,
-                            resolveValues, entry);
-                }
+            for (ExpressionPlan.Step step : plan.getSteps()) {
+                LOGGER.debug(EVALUATING, step.getName(), step.getExpression());
+                processExpression(dataSource, baseValue, localContext, additionalResolveValues,
+                        resolveValues, step.getName(), step.getExpression(), step.getKeyName(keyNameSuffix));
             }
             resolveValues.values().removeIf(Objects::isNull);
             return new ResourceEvaluationResult(resolveValues, additionalResolveValues,
-                    new PendingExpressionState(expressionsToEvaluateLater, context));
+                    new PendingExpressionState(plan.getEvaluateLater(), context));
 
         } catch (RequiredConstraintFailureException e) {
             LOGGER.warn("Resource Constraint condition not satisfied.");
@@ -94,17 +103,16 @@ public class ExpressionUtility {
 
     private static void processExpression(InputDataExtractor dataSource, EvaluationResult baseValue,
             Map<String, EvaluationResult> localContext, List<ResourceValue> additionalResolveValues,
-            Map<String, Object> resolveValues, Entry<String, Expression> entry) {
-        EvaluationResult obj = entry.getValue().evaluate(dataSource, localContext, baseValue);
-        LOGGER.debug("Evaluated {} {} value returned {} ", entry.getKey(), entry.getValue(), obj);
+            Map<String, Object> resolveValues, String name, Expression expression, String keyName) {
+        EvaluationResult obj = expression.evaluate(dataSource, localContext, baseValue);
+        LOGGER.debug("Evaluated {} {} value returned {} ", name, expression, obj);
 
         if (obj != null && !obj.isEmpty()) {
-            String keyNameSuffix = getKeyNameSuffix(localContext);
             // Check if the key already exist in the HashMap, if found append, do not replace
-            if (!resolveValues.containsKey(getKeyName(entry.getKey(), keyNameSuffix))) {
-                resolveValues.put(getKeyName(entry.getKey(), keyNameSuffix), obj.getValue());
+            if (!resolveValues.containsKey(keyName)) {
+                resolveValues.put(keyName, obj.getValue());
             } else {
-                Object existing = resolveValues.get(getKeyName(entry.getKey(), keyNameSuffix));
+                Object existing = resolveValues.get(keyName);
                 if (existing instanceof List) {
                     if (obj.getValue() instanceof List) {
                         ((List<Object>) existing).addAll(obj.getValue());
@@ -164,13 +172,14 @@ public class ExpressionUtility {
             Map<String, EvaluationResult> localContext = new HashMap<>(context);
             Map<String, Object> resolveValues = new HashMap<>();
             List<ResourceValue> additionalResolveValues = new ArrayList<>();
+            String keyNameSuffix = getKeyNameSuffix(localContext);
             for (Entry<String, Expression> entry : expressionMap.entrySet()) {
 
                 LOGGER.debug(EVALUATING, entry.getKey(), entry.getValue());
 
                 processExpression(dataSource, new EmptyEvaluationResult(), localContext,
-                        additionalResolveValues,
-                        resolveValues, entry);
+                        additionalResolveValues, resolveValues, entry.getKey(), entry.getValue(),
+                        getKeyName(entry.getKey(), keyNameSuffix));
 
             }
             resolveValues.values().removeIf(Objects::isNull);
@@ -0,0 +1,109 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.ConverterOptions.Builder;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+
+/**
+ * Converts the test messages from many threads with one shared converter, so all conversions share the
+ * same template expressions, and checks every result against the result of a sequential conversion.
+ */
+class ConcurrentConversionTest {
+
+    private static final ConverterOptions OPTIONS = new Builder().withPrettyPrint().build();
+    private static final Pattern UUID = Pattern
+            .compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    private static final Pattern LAST_UPDATED = Pattern.compile("\"lastUpdated\": \"[^\"]*\"");
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 10;
+
+    static List<String> messages() throws IOException {
+        List<String> messages = new ArrayList<>();
+        for (File file : FileUtils.listFiles(new File("src/test/resources"), new String[] { "hl7" }, false)) {
+            messages.add(FileUtils.readFileToString(file, StandardCharsets.UTF_8));
+        }
+        messages.add("MSH|^~\\&|SE050|050|PACS|050|20120912011230||ADT^A01|102|T|2.6|||AL|NE|764|ASCII||||||^4086::132:2A57:3C28^IPv6\r"
+                + "EVN||201209122222\r"
+                + "PID|0010||PID1234^5^M11^A^MR^HOSP~1234568965^^^USA^SS||DOE^JOHN^A^||19800202|F||W|111 TEST_STREET_NAME^^TEST_CITY^NY^111-1111^USA||(905)111-1111|||S|ZZ|12^^^124|34-13-312||||TEST_BIRTH_PLACE\r"
+                + "PV1|1|ff|yyy|EL|ABC||200^ATTEND_DOC_FAMILY_TEST^ATTEND_DOC_GIVEN_TEST|201^REFER_DOC_FAMILY_TEST^REFER_DOC_GIVEN_TEST||MED|||||B6|E|272^ADMITTING_DOC_FAMILY_TEST^ADMITTING_DOC_GIVEN_TEST||48390|||||||||||||||||||||||||201409122200|20150206031726\r"
+                + "AL1|1|DRUG|00000741^OXYCODONE||HYPOTENSION\r"
+                + "AL1|2|DRUG|00001433^TRAMADOL||SEIZURES~VOMITING\r");
+        messages.add("MSH|^~\\&|SE050|050|PACS|050|20120912011230||ORU^R01|MSG00001|T|2.6|||AL|NE\r"
+                + "PID|||555444222111^^^MPI&GenHosp&L^MR||james^anderson||19600614|M||C\r"
+                + "PV1||I|6N^1234^A^GENHOS||||0100^ANDERSON^CARL\r"
+                + "OBR|1||CD_000000|2244^General Order|||20170825010500||||||||||||||||||F\r"
+                + "OBX|1|NM|2345-7^Glucose^LN||105|mg/dL|70-99|H|||F|||20170825010500\r"
+                + "OBX|2|ST|14151-5^HCO3 BldCo-sCnc^LN||normal|mmol/L|||||F\r"
+                + "NTE|1|P|First comment\r");
+        messages.add("MSH|^~\\&|MYEHR2.5|RI88140101|KIDSNET_IFL|RIHEALTH|20130531||VXU^V04^VXU_V04|20130531RI881401010105|P|2.6|||AL|NE|764|ASCII||||||^4086::132:2A57:3C28^IPv6\r"
+                + "PID|1||432155^^^^MR||Patient^Johnny^New^^^^L|Smith^Sally|20130414|M||2106-3^White^HL70005|123 Any St^^Somewhere^WI^54000^^M\r"
+                + "ORC|RE||197023^CMC|||||||^Clerk^Myron||||||||||||||||\r"
+                + "RXA|0|1|20130531|20130531|48^HPV, quadrivalent^CVX|0.5|ML^^ISO+||00^New Immunization^NIP001|^Sticker^Nurse|^^^RI2050||||33k2a|20121214|MSD^Merck^MVX|||CP|A\r"
+                + "RXR|C28161^IM^NCIT^IM^IM^HL70162|RT^right thigh^HL70163\r");
+        return messages;
+    }
+
+    static String normalize(String json) {
+        return LAST_UPDATED.matcher(UUID.matcher(json).replaceAll("uuid")).replaceAll("\"lastUpdated\": \"\"");
+    }
+
+    @Test
+    void concurrent_conversions_with_one_converter_match_sequential_conversions() throws Exception {
+        HL7ToFHIRConverter converter = new HL7ToFHIRConverter();
+        List<String> messages = messages();
+        List<String> expected = new ArrayList<>();
+        for (String message : messages) {
+            expected.add(normalize(converter.convert(message, OPTIONS)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int offset = t;
+                futures.add(executor.submit(() -> {
+                    List<String> failures = new ArrayList<>();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        for (int i = 0; i < messages.size(); i++) {
+                            // Threads start at different messages so different templates run at the same time
+                            int index = (i + offset) % messages.size();
+                            String actual = normalize(converter.convert(messages.get(index), OPTIONS));
+                            if (!actual.equals(expected.get(index))) {
+                                failures.add("message " + index + " round " + round);
+                            }
+                        }
+                    }
+                    return failures;
+                }));
+            }
+            for (Future<List<String>> future : futures) {
+                assertThat(future.get()).isEmpty();
+            }
+        } finally {
+            executor.shutdown();
+            assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+        }
+    }
+
+}
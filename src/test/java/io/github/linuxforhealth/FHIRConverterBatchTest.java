@@ -0,0 +1,145 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Extension;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Resource;
+import org.hl7.fhir.r4.model.ResourceType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.linuxforhealth.fhir.FHIRContext;
+import io.github.linuxforhealth.fhir.NdjsonBulkDataWriter;
+import io.github.linuxforhealth.hl7.ConversionResult;
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+
+class FHIRConverterBatchTest {
+
+    private static final String UNSUPPORTED_MESSAGE = "MSH|^~\\&|MESA_ADT|XYZ_ADMITTING|MESA_IS|XYZ_HOSPITAL|201612291501||ADT^A18^ADT_A18|101166|P|2.6\r"
+            + "EVN|A18|201604211000||||201604210950\r"
+            + "PID|1||000010004^^^ST01A^MR||SENTARA10004^PAT^L||19251008|F\r";
+
+    private static final String SOURCE_RECORD_ID_URL = "http://ibm.com/fhir/cdm/StructureDefinition/source-record-id";
+
+    private HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
+
+    private static String adtMessage(int controlId) {
+        return "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ADT^A01|" + controlId + "|T|2.6|||AL|NE|764|ASCII\r"
+                + "EVN||201209122222\r"
+                + "PID|0010||PID1234^5^M11^A^MR^HOSP||DOE^JOHN^A^||19800202|F\r"
+                + "PV1|1|ff|yyy|EL|ABC\r";
+    }
+
+    @Test
+    void test_convert_all_returns_results_in_input_order() {
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            messages.add(adtMessage(1000 + i));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<ConversionResult<Bundle>> results = ftv.convertAllToBundles(messages, ConverterOptions.SIMPLE_OPTIONS,
+                    pool);
+            assertThat(results).hasSize(messages.size());
+            for (int i = 0; i < results.size(); i++) {
+                ConversionResult<Bundle> result = results.get(i);
+                assertThat(result.isSuccess()).isTrue();
+                assertThat(result.getIndex()).isEqualTo(i);
+                Resource patient = result.getValue().getEntry().stream()
+                        .filter(e -> e.getResource().getResourceType() == ResourceType.Patient)
+                        .findFirst().get().getResource();
+                // The source record id (MSH-10) identifies which input message the bundle came from
+                Extension recordId = patient.getMeta().getExtensionByUrl(SOURCE_RECORD_ID_URL);
+                assertThat(recordId.getValue().primitiveValue()).isEqualTo(String.valueOf(1000 + i));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void test_convert_all_captures_failure_per_message() {
+        List<String> messages = new ArrayList<>();
+        messages.add(adtMessage(1));
+        messages.add(UNSUPPORTED_MESSAGE);
+        messages.add(adtMessage(3));
+
+        List<ConversionResult<String>> results = ftv.convertAll(messages, ConverterOptions.SIMPLE_OPTIONS);
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).isSuccess()).isTrue();
+        assertThat(results.get(1).isSuccess()).isFalse();
+        assertThat(results.get(1).getValue()).isNull();
+        assertThat(results.get(1).getException()).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(results.get(2).isSuccess()).isTrue();
+
+        Bundle bundle = (Bundle) new FHIRContext().getParser().parseResource(results.get(2).getValue());
+        assertThat(bundle.getEntry()).isNotEmpty();
+    }
+
+    @Test
+    void test_convert_stream_converts_every_message_in_order() {
+        String input = adtMessage(1) + "\n" + UNSUPPORTED_MESSAGE + "\n" + adtMessage(3);
+
+        List<ConversionResult<Bundle>> results;
+        try (Stream<ConversionResult<Bundle>> stream = ftv.convertStreamToBundles(new StringReader(input),
+                ConverterOptions.SIMPLE_OPTIONS)) {
+            results = stream.collect(Collectors.toList());
+        }
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).isSuccess()).isTrue();
+        assertThat(results.get(1).getException()).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(results.get(2).isSuccess()).isTrue();
+        assertThat(results.get(2).getIndex()).isEqualTo(2);
+    }
+
+    @Test
+    void test_convert_stream_from_file(@TempDir Path folder) throws IOException {
+        Path file = folder.resolve("batch.hl7");
+        Files.write(file, (adtMessage(1) + "\n" + adtMessage(2)).getBytes(StandardCharsets.UTF_8));
+
+        try (Stream<ConversionResult<String>> stream = ftv.convertStream(file, ConverterOptions.SIMPLE_OPTIONS)) {
+            assertThat(stream.filter(ConversionResult::isSuccess).count()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void test_convert_to_bulk_data_writes_ndjson_by_resource_type(@TempDir Path folder) throws IOException {
+        String input = adtMessage(1) + "\n" + UNSUPPORTED_MESSAGE + "\n" + adtMessage(3);
+
+        List<ConversionResult<Bundle>> failures;
+        try (NdjsonBulkDataWriter writer = new NdjsonBulkDataWriter.Builder(folder).build()) {
+            failures = ftv.convertToBulkData(new StringReader(input), ConverterOptions.SIMPLE_OPTIONS, writer);
+            assertThat(writer.getResourceCounts()).containsEntry("Patient", 2L);
+        }
+
+        assertThat(failures).hasSize(1);
+        assertThat(failures.get(0).getIndex()).isEqualTo(1);
+        List<String> patients = Files.readAllLines(folder.resolve("Patient.ndjson"), StandardCharsets.UTF_8);
+        assertThat(patients).hasSize(2);
+        assertThat(new FHIRContext().getParser().parseResource(Patient.class, patients.get(0)).getName())
+                .isNotEmpty();
+    }
+
+}
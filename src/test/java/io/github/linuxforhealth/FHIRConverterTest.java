@@ -7,6 +7,7 @@ package io.github.linuxforhealth;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -41,6 +42,7 @@ import io.github.linuxforhealth.fhir.FHIRContext;
 import io.github.linuxforhealth.hl7.ConverterOptions;
 import io.github.linuxforhealth.hl7.ConverterOptions.Builder;
 import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.message.BundleDeduplicator;
 import io.github.linuxforhealth.hl7.parsing.HL7DataExtractor;
 import io.github.linuxforhealth.hl7.parsing.HL7HapiParser;
 
@@ -324,6 +326,45 @@ class FHIRConverterTest {
         assertThat(coding.getSystem()).isEqualTo("http://terminology.hl7.org/CodeSystem/v2-0163");
     }
 
+    @Test
+    void test_equal_options_reuse_engine_and_produce_same_bundle_type() throws IOException {
+        ConverterOptions first = new Builder().withBundleType(BundleType.BATCH).withProperty("TENANT", "t1").build();
+        ConverterOptions second = new Builder().withBundleType(BundleType.BATCH).withProperty("TENANT", "t1").build();
+        ConverterOptions other = new Builder().withBundleType(BundleType.BATCH).withProperty("TENANT", "t2").build();
+        assertThat(first).isEqualTo(second).hasSameHashCodeAs(second);
+        assertThat(first).isNotEqualTo(other);
+        assertThat(ftv.getMessageEngine(first)).isSameAs(ftv.getMessageEngine(second))
+                .isNotSameAs(ftv.getMessageEngine(other));
+
+        String json1 = ftv.convert(new File(HL7_FILE_UNIX_NEWLINE), first);
+        String json2 = ftv.convert(new File(HL7_FILE_UNIX_NEWLINE), second);
+        verifyResult(json1, BundleType.BATCH);
+        verifyResult(json2, BundleType.BATCH);
+    }
+
+    @Test
+    void test_bundle_deduplicator_from_options_is_used() {
+        String message = "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ORU^R01|MSG00001|T|2.6|||AL|NE\r"
+                + "PID|||555444222111^^^MPI&GenHosp&L^MR||james^anderson||19600614|M||C\r"
+                + "OBR|1||CD_000000|2244^General Order|||20170825010500||||||||||||||||||F\r"
+                + "OBX|1|NM|2345-7^Glucose^LN||105|mg/dL|70-99|H|||F|||20170825010500\r"
+                + "OBX|2|ST|14151-5^HCO3 BldCo-sCnc^LN||normal|mmol/L|||||F\r";
+        // Every Observation has the same identity, so only the last one is kept
+        BundleDeduplicator deduplicator = new BundleDeduplicator.Builder()
+                .withResourceType("Observation", e -> "same").build();
+        ConverterOptions options = new Builder().withBundleDeduplicator(deduplicator).build();
+        assertThat(options).isNotEqualTo(ConverterOptions.SIMPLE_OPTIONS);
+
+        assertThat(countObservations(ftv.convert(message, ConverterOptions.SIMPLE_OPTIONS))).isEqualTo(2);
+        assertThat(countObservations(ftv.convert(message, options))).isEqualTo(1);
+    }
+
+    private static long countObservations(String json) {
+        Bundle b = (Bundle) new FHIRContext().getParser().parseResource(json);
+        return b.getEntry().stream().filter(e -> ResourceType.Observation == e.getResource().getResourceType())
+                .count();
+    }
+
     private void verifyResult(String json, BundleType expectedBundleType) {
         verifyResult(json, expectedBundleType, true);
     }
@@ -372,4 +413,26 @@ class FHIRConverterTest {
         }
     }
 
+    @Test
+    void test_byte_and_stream_output_match_string_output() throws IOException {
+        String hl7message = "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ADT^A01|102|T|2.6|||AL|NE|764|ASCII\r"
+                + "EVN||201209122222\r"
+                + "PID|0010||PID1234^5^M11^A^MR^HOSP||DOE^JOHN^A^||19800202|F\r";
+        ConverterOptions options = new Builder().withPrettyPrint().build();
+
+        Bundle expected = (Bundle) new FHIRContext().getParser().parseResource(ftv.convert(hl7message, options));
+
+        byte[] bytes = ftv.convertToBytes(hl7message, options);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ftv.convert(hl7message, options, out);
+
+        for (byte[] json : new byte[][] { bytes, out.toByteArray() }) {
+            Bundle bundle = (Bundle) new FHIRContext().getParser()
+                    .parseResource(new String(json, StandardCharsets.UTF_8));
+            assertThat(bundle.getEntry()).hasSameSizeAs(expected.getEntry());
+            assertThat(bundle.getEntry().get(0).getResource().getResourceType())
+                    .isEqualTo(expected.getEntry().get(0).getResource().getResourceType());
+        }
+    }
+
 }
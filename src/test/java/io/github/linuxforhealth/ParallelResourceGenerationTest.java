@@ -0,0 +1,93 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.ConverterOptions.Builder;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+
+/**
+ * Converts the test messages, ADT, ORU and VXU messages included, with transform.parallel.resources
+ * enabled and checks every bundle against the bundle of a sequential conversion.
+ */
+class ParallelResourceGenerationTest {
+
+    private static final String CONF_PROP_HOME = "hl7converter.config.home";
+    private static final ConverterOptions OPTIONS = new Builder().withPrettyPrint().build();
+    private static final int ROUNDS = 5;
+
+    @TempDir
+    static File folder;
+    static String originalConfigHome;
+
+    @BeforeAll
+    static void saveConfigHomeProperty() {
+        originalConfigHome = System.getProperty(CONF_PROP_HOME);
+    }
+
+    @AfterAll
+    static void reloadPreviousConfigurations() {
+        if (originalConfigHome != null)
+            System.setProperty(CONF_PROP_HOME, originalConfigHome);
+        else
+            System.clearProperty(CONF_PROP_HOME);
+        ConverterConfiguration.reset();
+    }
+
+    @Test
+    void parallel_resource_generation_matches_sequential_generation() throws IOException {
+        List<String> messages = ConcurrentConversionTest.messages();
+        useConfiguration(false);
+        List<String> expected = new ArrayList<>();
+        for (String message : messages) {
+            expected.add(ConcurrentConversionTest.normalize(new HL7ToFHIRConverter().convert(message, OPTIONS)));
+        }
+
+        useConfiguration(true);
+        assertThat(ConverterConfiguration.getInstance().isParallelResources()).isTrue();
+        HL7ToFHIRConverter converter = new HL7ToFHIRConverter();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < messages.size(); i++) {
+                assertThat(ConcurrentConversionTest.normalize(converter.convert(messages.get(i), OPTIONS)))
+                        .isEqualTo(expected.get(i));
+            }
+        }
+    }
+
+    // Writes the default configuration with transform.parallel.resources set
+    private static void useConfiguration(boolean parallelResources) throws IOException {
+        Properties prop = new Properties();
+        try (InputStream in = ParallelResourceGenerationTest.class.getClassLoader()
+                .getResourceAsStream("config.properties")) {
+            prop.load(in);
+        }
+        prop.setProperty("transform.parallel.resources", Boolean.toString(parallelResources));
+        File configFile = new File(folder, "config.properties");
+        try (OutputStream out = new FileOutputStream(configFile)) {
+            prop.store(out, null);
+        }
+        System.setProperty(CONF_PROP_HOME, configFile.getParent());
+        ConverterConfiguration.reset();
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.ConverterOptions.Builder;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+
+/**
+ * Converts the test messages with parsing.skip.unused.segments enabled and checks every bundle against the
+ * bundle converted from the whole message.
+ */
+class SkipUnusedSegmentsTest {
+
+    private static final String CONF_PROP_HOME = "hl7converter.config.home";
+    private static final ConverterOptions OPTIONS = new Builder().withPrettyPrint().build();
+
+    @TempDir
+    static File folder;
+    static String originalConfigHome;
+
+    @BeforeAll
+    static void saveConfigHomeProperty() {
+        originalConfigHome = System.getProperty(CONF_PROP_HOME);
+    }
+
+    @AfterAll
+    static void reloadPreviousConfigurations() {
+        if (originalConfigHome != null)
+            System.setProperty(CONF_PROP_HOME, originalConfigHome);
+        else
+            System.clearProperty(CONF_PROP_HOME);
+        ConverterConfiguration.reset();
+    }
+
+    @Test
+    void skipping_unused_segments_does_not_change_the_bundle() throws IOException {
+        List<String> messages = ConcurrentConversionTest.messages();
+        messages.add("MSH|^~\\&|SE050|050|PACS|050|20120912011230||ADT^A01|103|T|2.6|||AL|NE\r"
+                + "EVN||201209122222\r"
+                + "PID|0010||PID1234^5^M11^A^MR^HOSP||DOE^JOHN^A^||19800202|F\r"
+                + "ZPI|1|custom\r"
+                + "PV1|1|ff|yyy|EL|ABC||200^ATTEND_DOC_FAMILY_TEST^ATTEND_DOC_GIVEN_TEST\r"
+                + "AL1|1|DRUG|00000741^OXYCODONE||HYPOTENSION\r"
+                + "GT1|1||DOE^JANE\r");
+        useConfiguration(false);
+        assertThat(ConverterConfiguration.getInstance().isSkipUnusedSegments()).isFalse();
+        List<String> expected = new ArrayList<>();
+        for (String message : messages) {
+            expected.add(ConcurrentConversionTest.normalize(new HL7ToFHIRConverter().convert(message, OPTIONS)));
+        }
+
+        useConfiguration(true);
+        HL7ToFHIRConverter converter = new HL7ToFHIRConverter();
+        for (int i = 0; i < messages.size(); i++) {
+            assertThat(ConcurrentConversionTest.normalize(converter.convert(messages.get(i), OPTIONS)))
+                    .isEqualTo(expected.get(i));
+        }
+    }
+
+    // Writes the default configuration with parsing.skip.unused.segments set
+    private static void useConfiguration(boolean skipUnusedSegments) throws IOException {
+        Properties prop = new Properties();
+        try (InputStream in = SkipUnusedSegmentsTest.class.getClassLoader()
+                .getResourceAsStream("config.properties")) {
+            prop.load(in);
+        }
+        prop.setProperty("parsing.skip.unused.segments", Boolean.toString(skipUnusedSegments));
+        File configFile = new File(folder, "config.properties");
+        try (OutputStream out = new FileOutputStream(configFile)) {
+            prop.store(out, null);
+        }
+        System.setProperty(CONF_PROP_HOME, configFile.getParent());
+        ConverterConfiguration.reset();
+    }
+
+}
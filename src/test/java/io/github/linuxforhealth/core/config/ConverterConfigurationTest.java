@@ -112,6 +112,20 @@ class ConverterConfigurationTest {
         prop.store(new FileOutputStream(configFile), null);
     }
 
+    @Test
+    void test_that_non_integer_values_fall_back_to_defaults() throws IOException {
+        File configFile = new File(folder, "config.properties");
+        Properties prop = new Properties();
+        prop.put("message.structure.sample.rate", "every tenth");
+        prop.put("jexl.cache.size", "large");
+        prop.store(new FileOutputStream(configFile), null);
+        System.setProperty(CONF_PROP_HOME, configFile.getParent());
+        ConverterConfiguration.reset();
+        ConverterConfiguration theConvConfig = ConverterConfiguration.getInstance();
+        assertThat(theConvConfig.getMessageStructureSampleRate()).isEqualTo(100);
+        assertThat(theConvConfig.getJexlCacheSize()).isEqualTo(1000);
+    }
+
     /** Test will run 2nd due to alphabetical order, this order is important **/
     @Test
     void test_that_config_reset_reloads_configuration() throws IOException {
@@ -0,0 +1,74 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.expression;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import io.github.linuxforhealth.api.EvaluationResult;
+
+class ScopedContextMapTest {
+
+    private static EvaluationResult value(String value) {
+        return new SimpleEvaluationResult<>(value);
+    }
+
+    @Test
+    void bindings_hide_outer_bindings_and_match_a_copied_map() {
+        Map<String, EvaluationResult> context = new HashMap<>();
+        context.put("a", value("a"));
+        context.put("b", value("b"));
+
+        ScopedContextMap scoped = ScopedContextMap.of(context).with("b", value("b2"))
+                .withAll(ImmutableMap.of("c", value("c"), "a", value("a2")));
+
+        Map<String, EvaluationResult> copied = new HashMap<>(context);
+        copied.put("b", value("b2"));
+        copied.put("c", value("c"));
+        copied.put("a", value("a2"));
+
+        assertThat((String) scoped.get("a").getValue()).isEqualTo("a2");
+        assertThat((String) scoped.get("b").getValue()).isEqualTo("b2");
+        assertThat(scoped.containsKey("c")).isTrue();
+        assertThat(scoped.get("d")).isNull();
+        assertThat(scoped).hasSize(3);
+        assertThat(scoped.keySet()).containsExactlyElementsOf(copied.keySet());
+    }
+
+    @Test
+    void source_map_changes_are_not_seen_and_scopes_are_immutable() {
+        Map<String, EvaluationResult> context = new HashMap<>();
+        context.put("a", value("a"));
+        ScopedContextMap root = ScopedContextMap.of(context);
+        ScopedContextMap child = root.with("b", value("b"));
+        context.put("c", value("c"));
+
+        assertThat(root.containsKey("b")).isFalse();
+        assertThat(child.containsKey("c")).isFalse();
+        assertThat(ScopedContextMap.of(child)).isSameAs(child);
+        assertThat(child.withAll(new HashMap<>())).isSameAs(child);
+        assertThrows(UnsupportedOperationException.class, () -> child.put("d", value("d")));
+    }
+
+    @Test
+    void deep_chains_keep_all_bindings() {
+        ScopedContextMap scoped = ScopedContextMap.of(new HashMap<>());
+        for (int i = 0; i < 100; i++) {
+            scoped = scoped.with("key" + i, value("v" + i));
+        }
+        assertThat(scoped).hasSize(100);
+        assertThat((String) scoped.get("key0").getValue()).isEqualTo("v0");
+        assertThat((String) scoped.get("key99").getValue()).isEqualTo("v99");
+    }
+
+}
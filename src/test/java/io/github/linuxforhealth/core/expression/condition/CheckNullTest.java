@@ -45,4 +45,15 @@ class CheckNullTest {
         assertThat(simplecondition.test(contextVariables)).isTrue();
     }
 
+    @Test
+    void null_condition_with_fuzzy_match_checks_all_prefixed_variables() {
+        CheckNull simplecondition = (CheckNull) ConditionUtil.createCondition("$var? NULL");
+        Map<String, EvaluationResult> contextVariables = new HashMap<>();
+        contextVariables.put("var1", new EmptyEvaluationResult());
+        contextVariables.put("var2", new SimpleEvaluationResult<String>("abc"));
+        assertThat(simplecondition.test(contextVariables)).isFalse();
+        assertThat(ConditionUtil.createCondition("$var2 NULL").test(contextVariables)).isFalse();
+        assertThat(ConditionUtil.createCondition("$var3 NULL").test(contextVariables)).isTrue();
+    }
+
 }
@@ -210,6 +210,22 @@ class SimpleBiConditionTest {
 
     // Reflexive comparisons give the same result if the values are reversed in order
     // The caller excpects all these comparisons to be TRUE
+    @Test
+    void condition_is_reused_for_values_of_different_types() {
+        SimpleBiCondition simplecondition = (SimpleBiCondition) ConditionUtil.createCondition("$var1 EQUALS 25");
+        Map<String, EvaluationResult> contextVariables = new HashMap<>();
+        contextVariables.put("var1", new SimpleEvaluationResult<Object>(25));
+        assertThat(simplecondition.test(contextVariables)).isTrue();
+        contextVariables.put("var1", new SimpleEvaluationResult<Object>("25"));
+        assertThat(simplecondition.test(contextVariables)).isTrue();
+        contextVariables.put("var1", new SimpleEvaluationResult<Object>(26));
+        assertThat(simplecondition.test(contextVariables)).isFalse();
+        contextVariables.put("var1", new SimpleEvaluationResult<Object>(Boolean.TRUE));
+        assertThat(simplecondition.test(contextVariables)).isFalse();
+        contextVariables.remove("var1");
+        assertThat(simplecondition.test(contextVariables)).isFalse();
+    }
+
     private void reflexive_comparison_tests_expected_TRUE(Object value1, String comparison, Object value2) {
         // value1 as $var1 compares to value2 as constant should be true
         String condition = "$var1 " + comparison + " " + value2.toString();
@@ -0,0 +1,106 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.fhir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Resource;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import io.github.linuxforhealth.core.ObjectMapperUtil;
+
+class FHIRResourceBuilderTest {
+
+    private static final FHIRContext CONTEXT = new FHIRContext();
+    private static final FHIRResourceBuilder BUILDER = new FHIRResourceBuilder(CONTEXT.getCtx());
+
+    private static Map<String, Object> patientValues() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("resourceType", "Patient");
+        values.put("id", "f0a9a1d6-3c4b-4bb8-9d0c-0d5cfbd11a2e");
+        values.put("meta", ImmutableMap.of("extension", Lists.newArrayList(
+                ImmutableMap.of("url", "http://ibm.com/fhir/cdm/StructureDefinition/source-record-id",
+                        "valueId", "1001"))));
+        values.put("identifier", Lists.newArrayList(
+                ImmutableMap.of("value", "000010016", "type",
+                        ImmutableMap.of("coding", Lists.newArrayList(ImmutableMap.of(
+                                "system", "http://terminology.hl7.org/CodeSystem/v2-0203", "code", "MR"))))));
+        values.put("name", Lists.newArrayList(
+                ImmutableMap.of("family", "Wood", "given", Lists.newArrayList("Patrick"))));
+        values.put("gender", "female");
+        values.put("birthDate", "1970-01-01");
+        values.put("active", true);
+        values.put("multipleBirthInteger", 2);
+        return values;
+    }
+
+    private static String parseAndEncode(Class<? extends Resource> type, Map<String, Object> values)
+            throws JsonProcessingException {
+        String json = ObjectMapperUtil.getJSONInstance().writeValueAsString(values);
+        Resource parsed = CONTEXT.getParser().parseResource(type, json);
+        return CONTEXT.getParser().encodeResourceToString(parsed);
+    }
+
+    @Test
+    void built_resource_matches_parsed_resource() throws JsonProcessingException {
+        Patient patient = BUILDER.build(Patient.class, patientValues());
+
+        assertThat(patient).isNotNull();
+        assertThat(patient.getId()).isEqualTo("Patient/f0a9a1d6-3c4b-4bb8-9d0c-0d5cfbd11a2e");
+        assertThat(CONTEXT.getParser().encodeResourceToString(patient))
+                .isEqualTo(parseAndEncode(Patient.class, patientValues()));
+    }
+
+    @Test
+    void choice_and_decimal_values_match_parsed_resource() throws JsonProcessingException {
+        Map<String, Object> values = new HashMap<>();
+        values.put("resourceType", "Observation");
+        values.put("status", "final");
+        values.put("code", ImmutableMap.of("text", "Glucose"));
+        values.put("valueQuantity", ImmutableMap.of("value", 5.5f, "unit", "mmol/L"));
+
+        Observation observation = BUILDER.build(Observation.class, values);
+
+        assertThat(observation).isNotNull();
+        assertThat(CONTEXT.getParser().encodeResourceToString(observation))
+                .isEqualTo(parseAndEncode(Observation.class, values));
+    }
+
+    @Test
+    void values_without_direct_mapping_are_left_to_the_parser() {
+        Map<String, Object> unknownElement = patientValues();
+        unknownElement.put("notAnElement", "x");
+        assertThat(BUILDER.build(Patient.class, unknownElement)).isNull();
+
+        Map<String, Object> dateObject = patientValues();
+        dateObject.put("birthDate", new Date());
+        assertThat(BUILDER.build(Patient.class, dateObject)).isNull();
+
+        Map<String, Object> repeatedSingleValue = patientValues();
+        repeatedSingleValue.put("gender", Lists.newArrayList("female", "male"));
+        assertThat(BUILDER.build(Patient.class, repeatedSingleValue)).isNull();
+
+        Map<String, Object> invalidCode = patientValues();
+        invalidCode.put("gender", "not-a-gender");
+        assertThat(BUILDER.build(Patient.class, invalidCode)).isNull();
+
+        Map<String, Object> invalidDate = patientValues();
+        invalidDate.put("birthDate", "not-a-date");
+        assertThat(BUILDER.build(Patient.class, invalidDate)).isNull();
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.fhir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NdjsonBulkDataWriterTest {
+
+    private static final FHIRContext CONTEXT = new FHIRContext();
+
+    private static Bundle bundle(String patientId, int observations) {
+        Bundle bundle = new Bundle();
+        Patient patient = new Patient();
+        patient.setId(patientId);
+        patient.addName().setFamily("Wood");
+        bundle.addEntry().setResource(patient);
+        for (int i = 0; i < observations; i++) {
+            Observation observation = new Observation();
+            observation.setId(patientId + "-obs-" + i);
+            observation.getSubject().setReference("Patient/" + patientId);
+            bundle.addEntry().setResource(observation);
+        }
+        return bundle;
+    }
+
+    @Test
+    void resources_are_written_one_per_line_by_type(@TempDir Path folder) throws IOException {
+        try (NdjsonBulkDataWriter writer = new NdjsonBulkDataWriter.Builder(folder).withFlushBatchSize(2).build()) {
+            writer.write(bundle("p1", 2));
+            writer.write(bundle("p2", 1));
+
+            assertThat(writer.getResourceCounts()).containsEntry("Patient", 2L).containsEntry("Observation", 3L);
+        }
+
+        List<String> patients = Files.readAllLines(folder.resolve("Patient.ndjson"), StandardCharsets.UTF_8);
+        assertThat(patients).hasSize(2);
+        Patient patient = CONTEXT.getParser().parseResource(Patient.class, patients.get(1));
+        assertThat(patient.getIdElement().getIdPart()).isEqualTo("p2");
+        assertThat(Files.readAllLines(folder.resolve("Observation.ndjson"), StandardCharsets.UTF_8)).hasSize(3);
+    }
+
+    @Test
+    void gzip_files_can_be_read_back(@TempDir Path folder) throws IOException {
+        Path observations;
+        try (NdjsonBulkDataWriter writer = new NdjsonBulkDataWriter.Builder(folder.resolve("out")).withGzip()
+                .build()) {
+            writer.write(bundle("p1", 3));
+            observations = writer.getFiles().get("Observation");
+        }
+
+        assertThat(observations.getFileName().toString()).isEqualTo("Observation.ndjson.gz");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(observations)), StandardCharsets.UTF_8))) {
+            List<String> lines = reader.lines().collect(Collectors.toList());
+            assertThat(lines).hasSize(3);
+            Observation observation = CONTEXT.getParser().parseResource(Observation.class, lines.get(0));
+            assertThat(observation.getSubject().getReference()).isEqualTo("Patient/p1");
+        }
+    }
+
+}
@@ -8,6 +8,7 @@ package io.github.linuxforhealth.hl7.expression;
 import static org.assertj.core.api.Assertions.assertThat;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import com.google.common.collect.ImmutableMap;
@@ -19,6 +20,7 @@ import ca.uhn.hl7v2.model.Type;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.core.expression.SimpleEvaluationResult;
 import io.github.linuxforhealth.core.terminology.SimpleCode;
+import io.github.linuxforhealth.hl7.expression.specification.HL7Specification;
 import io.github.linuxforhealth.hl7.message.HL7MessageData;
 import io.github.linuxforhealth.hl7.parsing.HL7DataExtractor;
 import io.github.linuxforhealth.hl7.parsing.HL7HapiParser;
@@ -232,6 +234,30 @@ class Hl7ExpressionTest {
   }
 
 
+  @Test
+  void values_extracted_again_from_the_same_message_come_from_the_cache() throws IOException {
+    String message = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|||2.3|\r"
+        + "EVN|A01|20130617154644\r"
+        + "PID|1|465 306 5961|000010016^^^MR~000010017^^^MR~000010018^^^MR|407623|Wood^Patrick^^^MR||19700101|female|||High Street^^Oxford^^Ox1 4DP~George St^^Oxford^^Ox1 5AP|||||||\r";
+    Message hl7message = getMessage(message);
+    HL7DataExtractor hl7DTE = new HL7DataExtractor(hl7message);
+    HL7MessageData data = new HL7MessageData(hl7DTE);
+    Map<String, EvaluationResult> context = new HashMap<>();
+    context.put("PID", new SimpleEvaluationResult<>(hl7DTE.getStructure("PID", 0).getValue()));
+    HL7Specification spec = new HL7Specification("PID", "3", -1, -1, true, false);
+
+    EvaluationResult first = data.extractMultipleValuesForSpec(spec, context);
+    assertThat((List<?>) first.getValue()).hasSize(3);
+    ((List<?>) first.getValue()).clear();
+    EvaluationResult second = data.extractMultipleValuesForSpec(
+        new HL7Specification("PID", "3", -1, -1, false, false), context);
+
+    assertThat((List<?>) second.getValue()).hasSize(3);
+    assertThat(data.getExtractionCacheStats().missCount()).isEqualTo(1);
+    assertThat(data.getExtractionCacheStats().hitCount()).isEqualTo(1);
+  }
+
+
   private static Message getMessage(String message) throws IOException {
     HL7HapiParser hparser = null;
 
@@ -6,6 +6,7 @@
 package io.github.linuxforhealth.hl7.expression;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -108,6 +109,14 @@ class JELXExpressionTest {
   }
 
 
+  @Test
+  void unsupported_expression_fails_when_the_expression_is_built() {
+    ExpressionAttributes attr = new ExpressionAttributes.Builder()
+        .withValueOf("System.currentTimeMillis()").build();
+    assertThrows(IllegalArgumentException.class, () -> new JEXLExpression(attr));
+  }
+
+
   private static Message getMessage(String message) throws IOException {
     HL7HapiParser hparser = null;
 
@@ -10,6 +10,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.commons.jexl3.JexlExpression;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -17,6 +18,8 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import io.github.linuxforhealth.core.data.JexlEngineUtil;
+import io.github.linuxforhealth.core.exception.DataExtractionException;
+import io.github.linuxforhealth.hl7.data.Hl7RelatedGeneralUtils;
 
 class JexlEngineUtilTest {
 
@@ -64,4 +67,64 @@ class JexlEngineUtilTest {
         assertThat(b).isEqualTo(NumberUtils.createFloat("1.2"));
     }
 
+    @Test
+    void compiled_expressions_and_conditions_are_cached() {
+        JexlEngineUtil wex = new JexlEngineUtil();
+        Map<String, Object> context = new HashMap<>();
+        context.put("var1", "s");
+        context.put("var2", "t");
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(wex.evaluate("String.join(\"-\", var1, var2)", context)).isEqualTo("s-t");
+            assertThat(wex.evaluateCondition("var1 != var2", context)).isTrue();
+        }
+        assertThat(wex.getCacheMissCount()).isEqualTo(2);
+        assertThat(wex.getCacheHitCount()).isEqualTo(4);
+        assertThat(context).containsOnlyKeys("var1", "var2");
+    }
+
+    @Test
+    void compiled_expression_evaluates_like_its_text() {
+        JexlEngineUtil wex = new JexlEngineUtil();
+        Map<String, Object> context = new HashMap<>();
+        context.put("var1", "s");
+
+        JexlExpression exp = wex.compile("  String.valueOf(var1) ");
+        assertThat(wex.evaluate(exp, context)).isEqualTo(wex.evaluate("String.valueOf(var1)", context));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> wex.compile("String.toString(;"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> wex.compile("System.exit(1)"));
+    }
+
+    @Test
+    void single_function_calls_return_the_same_values_as_jexl() {
+        JexlEngineUtil wex = new JexlEngineUtil("GeneralUtils", Hl7RelatedGeneralUtils.class);
+        Map<String, Object> context = new HashMap<>();
+        context.put("prefix", null);
+        context.put("first", "John");
+        context.put("family", "Doe");
+        context.put("middle", null);
+        context.put("number", 5);
+
+        String name = "GeneralUtils.generateName(prefix, first, middle, family, 'Jr')";
+        assertThat(wex.evaluate(wex.compile(name), context)).isEqualTo(wex.evaluate(name, context))
+                .isEqualTo("John Doe Jr");
+        assertThat(wex.evaluate(wex.compile("StringUtils.capitalize(family)"), context)).isEqualTo("Doe");
+        // Argument values that do not fit the method, and undefined variables, fail as they do in JEXL
+        Assertions.assertThrows(DataExtractionException.class,
+                () -> wex.evaluate(wex.compile("StringUtils.capitalize(number)"), context));
+        Assertions.assertThrows(DataExtractionException.class,
+                () -> wex.evaluate(wex.compile("StringUtils.capitalize(undefined)"), context));
+    }
+
+    @Test
+    void variables_take_precedence_over_functions() {
+        JexlEngineUtil wex = new JexlEngineUtil();
+        Map<String, Object> context = new HashMap<>();
+        context.put("NumberUtils", "not the function");
+        context.put("var1", "s");
+
+        assertThat(wex.evaluateCondition("var1 == NumberUtils", context)).isFalse();
+        assertThat(wex.evaluate("String.valueOf(NumberUtils)", context)).isEqualTo("not the function");
+    }
+
 }
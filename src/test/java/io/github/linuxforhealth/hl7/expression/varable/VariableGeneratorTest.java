@@ -6,11 +6,16 @@
 package io.github.linuxforhealth.hl7.expression.varable;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import io.github.linuxforhealth.api.EvaluationResult;
+import io.github.linuxforhealth.core.expression.SimpleEvaluationResult;
 import io.github.linuxforhealth.hl7.expression.variable.DataTypeVariable;
 import io.github.linuxforhealth.hl7.expression.variable.ExpressionVariable;
+import io.github.linuxforhealth.hl7.expression.variable.SimpleVariable;
 import io.github.linuxforhealth.hl7.expression.variable.VariableGenerator;
 
 class VariableGeneratorTest {
@@ -54,4 +59,21 @@ class VariableGeneratorTest {
 	  Assertions.assertTrue(v.getExpression().equalsIgnoreCase(" GeneralUtils.testFunction(x, y)"), "Variable expression not set correctly");
 	  Assertions.assertTrue(v.extractMultiple(), "Variable extract multiple should be true");
   }
-}
\ No newline at end of file
+
+  /**
+   * Test that variable references in the specs are looked up in the context, in order
+   *
+   * var1: $missing | $name
+   */
+  @Test
+  void simpleVariableWithVariableReferencesUsesFirstValueFound() {
+    SimpleVariable v = (SimpleVariable) VariableGenerator.parse("var1", "$missing | $name");
+    Map<String, EvaluationResult> context = new HashMap<>();
+    context.put("name", new SimpleEvaluationResult<>("value"));
+    Assertions.assertEquals("value", v.extractVariableValue(context, null).getValue());
+
+    v = (SimpleVariable) VariableGenerator.parse("var1", "$missing + $code + $name");
+    context.put("code", new SimpleEvaluationResult<>("c"));
+    Assertions.assertEquals("cvalue", v.extractVariableValue(context, null).getValue());
+  }
+}
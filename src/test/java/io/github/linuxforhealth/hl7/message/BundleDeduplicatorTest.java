@@ -0,0 +1,65 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Device;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Organization;
+import org.hl7.fhir.r4.model.Practitioner;
+import org.hl7.fhir.r4.model.Resource;
+import org.junit.jupiter.api.Test;
+
+class BundleDeduplicatorTest {
+
+    private static void addEntry(Bundle bundle, Resource resource, String id) {
+        resource.setId(resource.fhirType() + "/" + id);
+        bundle.addEntry().setResource(resource).setFullUrl(resource.getId());
+    }
+
+    @Test
+    void duplicates_of_configured_types_are_removed_keeping_the_last() {
+        Bundle bundle = new Bundle();
+        addEntry(bundle, new Organization().setName("first"), "org1");
+        addEntry(bundle, new Practitioner(), "pr1");
+        addEntry(bundle, new Observation(), "obs1");
+        addEntry(bundle, new Organization().setName("second"), "org1");
+        addEntry(bundle, new Practitioner(), "pr1");
+        addEntry(bundle, new Observation(), "obs1");
+        addEntry(bundle, new Organization(), "org2");
+
+        BundleDeduplicator deduplicator = new BundleDeduplicator.Builder().withResourceType("Organization")
+                .withResourceType("Practitioner").build();
+
+        assertThat(deduplicator.deduplicate(bundle)).containsOnly(entry("Organization", 1),
+                entry("Practitioner", 1));
+        assertThat(bundle.getEntry()).extracting(Bundle.BundleEntryComponent::getFullUrl).containsExactly(
+                "Observation/obs1", "Organization/org1", "Practitioner/pr1", "Observation/obs1",
+                "Organization/org2");
+        assertThat(((Organization) bundle.getEntry().get(1).getResource()).getName()).isEqualTo("second");
+        assertThat(deduplicator.deduplicate(bundle)).isEmpty();
+    }
+
+    @Test
+    void custom_identity_and_entries_without_identity() {
+        Bundle bundle = new Bundle();
+        addEntry(bundle, new Device().setLotNumber("lot-1"), "d1");
+        addEntry(bundle, new Device().setLotNumber("lot-1"), "d2");
+        addEntry(bundle, new Device(), "d3");
+        addEntry(bundle, new Device(), "d4");
+
+        BundleDeduplicator deduplicator = new BundleDeduplicator.Builder()
+                .withResourceType("Device", e -> ((Device) e.getResource()).getLotNumber()).build();
+
+        assertThat(deduplicator.deduplicate(bundle)).containsOnly(entry("Device", 1));
+        assertThat(bundle.getEntry()).extracting(Bundle.BundleEntryComponent::getFullUrl)
+                .containsExactly("Device/d2", "Device/d3", "Device/d4");
+    }
+
+}
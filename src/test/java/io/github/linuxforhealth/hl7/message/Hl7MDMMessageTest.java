@@ -146,11 +146,12 @@ class Hl7MDMMessageTest {
             }
         }
 
+        // TXA.9 and TXA.10 are the same practitioner (<PHYSID>), which is generated once and referenced twice
         List<Resource> practitioners = ResourceUtils.getResourceList(e, ResourceType.Practitioner);
-        assertThat(practitioners).hasSize(7);
+        assertThat(practitioners).hasSize(6);
 
         // Confirm that no extra resources are created
-        assertThat(e.size()).isEqualTo(12);
+        assertThat(e.size()).isEqualTo(11);
     }
 
     @ParameterizedTest
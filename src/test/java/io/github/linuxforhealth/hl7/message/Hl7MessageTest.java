@@ -211,9 +211,9 @@ class Hl7MessageTest {
                 .filter(v -> ResourceType.Practitioner == v.getResource().getResourceType())
                 .map(BundleEntryComponent::getResource).collect(Collectors.toList());
 
-        // We expect 10 practitioners because there are 5 in each OBX record. 
-        // They may be duplicates.  Deduplication is not currently supported.        
-        assertThat(pracResource).hasSize(10);
+        // We expect 5 practitioners: there are 5 in each OBX record and they are the same 5 in both.
+        // A referenced resource with the same content is generated once per message and referenced again.
+        assertThat(pracResource).hasSize(5);
     }
 
     @Test
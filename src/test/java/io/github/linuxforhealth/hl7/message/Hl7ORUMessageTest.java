@@ -781,4 +781,27 @@ class Hl7ORUMessageTest {
         assertThat(expectStatusUnknown.hasStatus()).isTrue();
         assertThat(status).isEqualTo(DiagnosticReport.DiagnosticReportStatus.UNKNOWN);
     }
-}
\ No newline at end of file
+
+    @Test
+    void observations_with_the_same_responsible_observer_reference_one_practitioner() throws IOException {
+        String hl7message = "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ORU^R01|MSG00001|T|2.6|||AL|NE\r"
+                + "PID|||555444222111^^^MPI&GenHosp&L^MR||james^anderson||19600614|M||C\r"
+                + "OBR|1||CD_000000|2244^General Order|||20170825010500||||||||||||||||||F\r"
+                + "OBX|1|NM|2345-7^Glucose^LN||105|mg/dL|70-99|H|||F|||20170825010500||2221^SMITH^JOHN\r"
+                + "OBX|2|NM|2339-0^Glucose Bld^LN||110|mg/dL|70-99|H|||F|||20170825010500||2221^SMITH^JOHN\r";
+        List<BundleEntryComponent> e = ResourceUtils.createFHIRBundleFromHL7MessageReturnEntryList(ftv, hl7message);
+
+        List<Resource> observations = ResourceUtils.getResourceList(e, ResourceType.Observation);
+        assertThat(observations).hasSize(2);
+        List<Resource> practitioners = ResourceUtils.getResourceList(e, ResourceType.Practitioner);
+        assertThat(practitioners).hasSize(1);
+
+        // Both observations reference the practitioner generated for the first one
+        String practitionerId = practitioners.get(0).getId();
+        for (Resource resource : observations) {
+            Observation observation = ResourceUtils.getResourceObservation(resource, context);
+            assertThat(observation.getPerformer()).hasSize(1);
+            assertThat(observation.getPerformer().get(0).getReference()).isEqualTo(practitionerId);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.Lists;
+
+import io.github.linuxforhealth.hl7.resource.ResourceReader;
+
+class MessageExecutionPlanTest {
+
+    private static int indexOf(List<MessageExecutionPlan.ResourceStep> steps, String resourceName) {
+        for (int i = 0; i < steps.size(); i++) {
+            if (steps.get(i).getTemplate().getResourceName().equals(resourceName)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(resourceName);
+    }
+
+    @Test
+    void steps_depend_only_on_earlier_referenced_resources_they_use() {
+        HL7MessageModel model = ResourceReader.getInstance().getMessageTemplates().get("ADT_A01");
+        MessageExecutionPlan plan = model.getPlan();
+        List<MessageExecutionPlan.ResourceStep> steps = plan.getSteps();
+
+        assertThat(steps).hasSize(model.getResources().size());
+        assertThat(plan.getDependencies(indexOf(steps, "MessageHeader"))).isEmpty();
+        assertThat(plan.getDependencies(indexOf(steps, "AllergyIntolerance")))
+                .contains(indexOf(steps, "Patient"))
+                .doesNotContain(indexOf(steps, "MessageHeader"));
+        for (int i = 0; i < steps.size(); i++) {
+            for (int dependency : plan.getDependencies(i)) {
+                assertThat(dependency).isLessThan(i);
+                assertThat(steps.get(dependency).getTemplate().isReferenced()).isTrue();
+            }
+        }
+    }
+
+    @Test
+    void steps_depend_on_earlier_referenced_steps_without_template_path() {
+        HL7FHIRResourceTemplateAttributes.Builder patient = new HL7FHIRResourceTemplateAttributes.Builder()
+                .withResourceName("Patient").withSegment("PID").withIsReferenced(true)
+                .withResourcePath("resource/Patient");
+        HL7FHIRResourceTemplateAttributes.Builder encounter = new HL7FHIRResourceTemplateAttributes.Builder()
+                .withResourceName("Encounter").withSegment("PV1").withIsReferenced(true)
+                .withResourceModel(ResourceReader.getInstance().generateResourceModel("resource/Encounter"));
+        MessageExecutionPlan plan = MessageExecutionPlan.compile(Lists.newArrayList(
+                new HL7FHIRResourceTemplate(patient.build()), new HL7FHIRResourceTemplate(encounter.build())));
+
+        assertThat(plan.getDependencies(0)).isEmpty();
+        assertThat(plan.getDependencies(1)).containsExactly(0);
+    }
+
+    @Test
+    void steps_depend_on_all_earlier_referenced_steps() {
+        // Encounter uses Practitioner only through the secondary/Participant template, and reads no Device
+        HL7FHIRResourceTemplateAttributes.Builder practitioner = new HL7FHIRResourceTemplateAttributes.Builder()
+                .withResourceName("Practitioner").withSegment("PV1").withIsReferenced(true)
+                .withResourcePath("resource/Practitioner");
+        HL7FHIRResourceTemplateAttributes.Builder device = new HL7FHIRResourceTemplateAttributes.Builder()
+                .withResourceName("Device").withSegment("PRT").withIsReferenced(true)
+                .withResourcePath("resource/Device");
+        HL7FHIRResourceTemplateAttributes.Builder observation = new HL7FHIRResourceTemplateAttributes.Builder()
+                .withResourceName("Observation").withSegment("OBX").withResourcePath("resource/Observation");
+        HL7FHIRResourceTemplateAttributes.Builder encounter = new HL7FHIRResourceTemplateAttributes.Builder()
+                .withResourceName("Encounter").withSegment("PV1").withResourcePath("resource/Encounter");
+        MessageExecutionPlan plan = MessageExecutionPlan.compile(Lists.newArrayList(
+                new HL7FHIRResourceTemplate(practitioner.build()), new HL7FHIRResourceTemplate(device.build()),
+                new HL7FHIRResourceTemplate(observation.build()), new HL7FHIRResourceTemplate(encounter.build())));
+
+        assertThat(plan.getDependencies(1)).containsExactly(0);
+        assertThat(plan.getDependencies(2)).containsExactly(0, 1);
+        assertThat(plan.getDependencies(3)).containsExactly(0, 1);
+    }
+
+}
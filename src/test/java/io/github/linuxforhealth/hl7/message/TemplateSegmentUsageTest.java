@@ -0,0 +1,37 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.linuxforhealth.hl7.resource.ResourceReader;
+
+class TemplateSegmentUsageTest {
+
+    @Test
+    void segments_are_found_in_the_message_template_and_the_parsed_resource_templates() {
+        HL7MessageModel model = ResourceReader.getInstance().getMessageTemplates().get("ADT_A01");
+
+        Set<String> segments = new TemplateSegmentUsage().getReferencedSegments(model);
+
+        // PV2 is an additional segment of the message template, MRG is only read by resource/Patient
+        assertThat(segments).contains("MSH", "EVN", "PID", "PV1", "PV2", "AL1", "MRG")
+                .doesNotContain("GT1", "NK1", "ZPI");
+    }
+
+    @Test
+    void segments_are_found_for_every_message_template() {
+        TemplateSegmentUsage usage = new TemplateSegmentUsage();
+        for (HL7MessageModel model : ResourceReader.getInstance().getMessageTemplates().values()) {
+            assertThat(usage.getReferencedSegments(model)).as(model.getMessageName()).isNotNull();
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Segment;
+import ca.uhn.hl7v2.model.Type;
+
+class ConcurrentHL7DataExtractorTest {
+
+    private static final String GROUP_MESSAGE = "MSH|^~\\&|SendTest1|Sendfac1|Receiveapp1|Receivefac1|200603081747|security|PPR^PC1^PPR_PC1|1|P^I|2.6||||||ASCII||\r"
+            + "PID|||555444222111^^^MPI&GenHosp&L^MR||james^anderson||19600614|M||C|99 Oakland #106^^qwerty^OH^44889||^^^^^626^5641111|^^^^^626^5647654|||||343132266|||N\r"
+            + "PV1||I|6N^1234^A^GENHOS||||0100^ANDERSON^CARL|0148^ADDISON^JAMES||SUR|||||||0148^ANDERSON^CARL|S|1400|A|||||||||||||||||||SF|K||||199501102300\r"
+            + "PRB|AD|200603150625|aortic stenosis|53692||2||200603150625\r";
+
+    private static final String MESSAGE = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|||2.3|\r"
+            + "PID|1|465 306 5961|000010016^^^MR~000010017^^^MR~000010018^^^MR|407623|Wood^Patrick^^^MR||19700101|female|||High Street^^Oxford^^Ox1 4DP~George St^^Oxford^^Ox1 5AP|||||||\r"
+            + "OBX|1|CE|93000&CMP^LIN^CPT4|11|1305^No significant change was found^MEIECG\r";
+
+    @Test
+    void reads_the_same_values_as_the_default_extractor() throws IOException, HL7Exception {
+        for (String message : new String[] { GROUP_MESSAGE, MESSAGE }) {
+            assertThat(read(new ConcurrentHL7DataExtractor(getMessage(message))))
+                    .isEqualTo(read(new HL7DataExtractor(getMessage(message))));
+        }
+        HL7DataExtractor expected = new HL7DataExtractor(getMessage(MESSAGE));
+        HL7DataExtractor concurrent = new ConcurrentHL7DataExtractor(getMessage(MESSAGE));
+        assertThat(concurrent.get("PID", "5-2").getValue()).isEqualTo(expected.get("PID", "5-2").getValue());
+        assertThat(concurrent.getMessageId()).isEqualTo(expected.getMessageId());
+    }
+
+    @Test
+    void reading_missing_values_does_not_change_the_message() throws IOException, HL7Exception {
+        Message groupMessage = getMessage(GROUP_MESSAGE);
+        String encodedGroupMessage = groupMessage.encode();
+        HL7DataExtractor concurrent = new ConcurrentHL7DataExtractor(groupMessage);
+        assertThat(concurrent.getStructure("PROBLEM", 1, "PRB", 0).getValue()).isNull();
+        assertThat(concurrent.getStructure("PROBLEM", 0, "NTE", 0).getValue()).isNull();
+        assertThat(concurrent.getAllStructures("PROBLEM", 2, "PRB").getValues()).isEmpty();
+        assertThat(groupMessage.encode()).isEqualTo(encodedGroupMessage);
+
+        Message message = getMessage(MESSAGE);
+        String encoded = message.encode();
+        concurrent = new ConcurrentHL7DataExtractor(message);
+        Segment pid = (Segment) concurrent.getStructure("PID", 0).getValue();
+        assertThat(concurrent.getType(pid, 3, 5).getValue()).isNull();
+        Type obx5 = concurrent.getType((Segment) concurrent.getStructure("OBX", 0).getValue(), 5, 0).getValue();
+        assertThat(concurrent.getComponent(obx5, 9).getValue()).isNull();
+        assertThat(concurrent.getComponent(obx5, 9, 2).getValue()).isNull();
+        assertThat(message.encode()).isEqualTo(encoded);
+    }
+
+    private static List<String> read(HL7DataExtractor extractor) throws HL7Exception {
+        List<String> values = new ArrayList<>();
+        if (extractor.doesSegmentExists("PROBLEM")) {
+            values.add(encode(extractor.getStructure("PROBLEM", 0, "PRB", 0).getValue()));
+            values.add(String.valueOf(extractor.getAllStructures("PROBLEM", 0, "PRB").getValues().size()));
+            return values;
+        }
+        Segment pid = (Segment) extractor.getStructure("PID", 0).getValue();
+        Type cx = extractor.getType(pid, 3, 1).getValue();
+        values.add(encode(cx));
+        values.add(encode(extractor.getComponent(cx, 1).getValue()));
+        values.add(encode(extractor.getComponent(cx, 4, 1).getValue()));
+        values.add(encode(extractor.getComponent(cx, 4, 2).getValue()));
+        Segment obx = (Segment) extractor.getStructure("OBX", 0).getValue();
+        Type obx5 = extractor.getType(obx, 5, 0).getValue();
+        values.add(encode(extractor.getComponent(obx5, 2).getValue()));
+        values.add(encode(extractor.getComponent(obx5, 2, 1).getValue()));
+        Type obx3 = extractor.getType(obx, 3, 0).getValue();
+        values.add(encode(extractor.getComponent(obx3, 1, 2).getValue()));
+        return values;
+    }
+
+    private static String encode(Object value) throws HL7Exception {
+        if (value instanceof Segment) {
+            return ((Segment) value).encode();
+        }
+        return value != null ? ((Type) value).encode() : null;
+    }
+
+    private static Message getMessage(String message) throws IOException {
+        HL7HapiParser hparser = null;
+
+        try {
+            hparser = new HL7HapiParser();
+            return hparser.getParser().parse(message);
+        } catch (HL7Exception e) {
+            throw new IllegalArgumentException(e);
+        } finally {
+            if (hparser != null) {
+                hparser.getContext().close();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import ca.uhn.hl7v2.model.Message;
+
+/**
+ * Parity of {@link Er7DataExtractor} with {@link HL7DataExtractor}: every value the ER7 extractor returns must
+ * equal the value read from the parsed message.
+ */
+class Er7DataExtractorTest {
+
+    private static final List<String> SEGMENTS = Arrays.asList("MSH", "EVN", "PID", "PD1", "PV1", "NK1", "ORC",
+            "OBR", "OBX", "NTE", "AL1", "PRB", "ZPI");
+
+    static List<String> messages() {
+        return Arrays.asList(
+                "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|102|P|2.6|\r"
+                        + "EVN|A01|20130617154644||01|\r"
+                        + "PID|1|465 306 5961|000010016^^^MR~000010017^^^MR||Wood^Patrick^^^MR||19700101|female|||High Street^^Oxford^^Ox1 4DP\r"
+                        + "NK1|1|Wood^John^^^MR|Father||999-9999\r"
+                        + "NK1|2|Wood^Mary^^^MR|Mother||999-9999\r"
+                        + "PV1|1|I|6N^1234^A^GENHOS||||0100^ANDERSON^CARL|0148^ADDISON^JAMES\r"
+                        + "AL1|1|DA|^PENICILLIN|MO|PRODUCES HIVES~RASH\r"
+                        + "ZPI|1|custom\r",
+                "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ORU^R01|MSG\\T\\1|T|2.6|||AL|NE\r"
+                        + "PID|||555444222111^^^MPI&GenHosp&L^MR||james^anderson||19600614|M\r"
+                        + "OBR|1||CD_000000|2244^General Order|||20170825010500||||||||||||||||||F\r"
+                        + "OBX|1|ST|14151-5^HCO3 BldCo-sCnc^LN|| value with spaces |mmol/L|||||F\r"
+                        + "NTE|1|P|First comment\r",
+                "MSH|^~\\&|SendTest1|Sendfac1|Receiveapp1|Receivefac1|200603081747|security|PPR^PC1^PPR_PC1|1|P^I|2.6||||||ASCII||\r"
+                        + "PID|||555444222111^^^MPI&GenHosp&L^MR||james^anderson||19600614|M||C\r"
+                        + "PV1||I|6N^1234^A^GENHOS||||0100^ANDERSON^CARL\r"
+                        + "PRB|AD|200603150625|aortic stenosis|53692||2||200603150625\r"
+                        + "NTE|1|P|Problem comment\r",
+                "MSH|^~\\&|||||||VXU^V04|||2.6\r"
+                        + "PID|1||PID1234^^^MYEMR^MR||\"\"^JOHN||  \r"
+                        + "ORC|RE||197023^CMC|||||||^Clerk^Myron\r"
+                        + "RXA|0|1|20130531|20130531|48^HPV, quadrivalent^CVX|0.5|ML^^ISO+\r");
+    }
+
+    @ParameterizedTest
+    @MethodSource("messages")
+    void values_match_the_hapi_extractor(String text) throws Exception {
+        Message message = HL7HapiParserPool.getInstance().parse(text);
+        HL7DataExtractor hde = new HL7DataExtractor(message);
+        Er7DataExtractor er7 = new Er7DataExtractor(Er7MessageIndex.of(text), message);
+
+        int checked = 0;
+        for (String segment : SEGMENTS) {
+            for (int field = 1; field <= 20; field++) {
+                String value = er7.get(segment, Integer.toString(field));
+                if (value != null) {
+                    assertThat(value).as(segment + "-" + field)
+                            .isEqualTo(hde.get(segment, Integer.toString(field)).getValue());
+                    checked++;
+                }
+            }
+        }
+        assertThat(checked).isPositive();
+        assertThat(er7.get("PID", "x")).isNull();
+
+        if (er7.getMessageType() != null) {
+            assertThat(er7.getMessageType()).isEqualTo(hde.getMessageType());
+        }
+        if (er7.getMessageId() != null) {
+            assertThat(er7.getMessageId()).isEqualTo(hde.getMessageId());
+        }
+    }
+
+}
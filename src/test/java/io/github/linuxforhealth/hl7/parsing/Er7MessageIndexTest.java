@@ -0,0 +1,72 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class Er7MessageIndexTest {
+
+    private static final String MESSAGE = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|102|P|2.6|\r"
+            + "PID|1||000010016^^^MR&GenHosp&L~000010017^^^MR||Wood^Patrick^^^MR||19700101|female\r"
+            + "NK1|1|Wood^John|Father\r"
+            + "NK1|2|Wood^Mary|Mother\n";
+
+    @Test
+    void segments_and_fields_are_indexed() {
+        Er7MessageIndex index = Er7MessageIndex.of(MESSAGE);
+
+        assertThat(index.getSegmentCount()).isEqualTo(4);
+        assertThat(index.getSegmentName(1).toString()).isEqualTo("PID");
+        assertThat(index.findSegment("NK1", 1)).isEqualTo(3);
+        assertThat(index.findSegment("NK1", 2)).isEqualTo(-1);
+        assertThat(index.findSegment("OBX", 0)).isEqualTo(-1);
+        assertThat(index.getSegment(2).toString()).isEqualTo("NK1|1|Wood^John|Father");
+        assertThat(index.getFieldCount(0)).isEqualTo(13);
+        assertThat(index.getFieldCount(1)).isEqualTo(8);
+    }
+
+    @Test
+    void msh_fields_are_numbered_from_the_field_separator() {
+        Er7MessageIndex index = Er7MessageIndex.of(MESSAGE);
+
+        assertThat(index.getField(0, 1).toString()).isEqualTo("|");
+        assertThat(index.getField(0, 2).toString()).isEqualTo("^~\\&");
+        assertThat(index.getValue(0, 2, 0, 1, 1).toString()).isEqualTo("^~\\&");
+        assertThat(index.getField(0, 3).toString()).isEqualTo("hl7Integration");
+        assertThat(index.getValue(0, 9, 0, 2, 1).toString()).isEqualTo("A01");
+        assertThat(index.getValue(0, 10, 0, 1, 1).toString()).isEqualTo("102");
+        assertThat(index.getValue(0, 12, 0, 1, 1).toString()).isEqualTo("2.6");
+    }
+
+    @Test
+    void repetitions_components_and_subcomponents_are_sliced() {
+        Er7MessageIndex index = Er7MessageIndex.of(MESSAGE);
+
+        assertThat(index.getField(1, 3).toString()).isEqualTo("000010016^^^MR&GenHosp&L~000010017^^^MR");
+        assertThat(index.getValue(1, 3, 0, 1, 1).toString()).isEqualTo("000010016");
+        assertThat(index.getValue(1, 3, 0, 4, 2).toString()).isEqualTo("GenHosp");
+        assertThat(index.getValue(1, 3, 1, 4, 1).toString()).isEqualTo("MR");
+        assertThat(index.getValue(1, 3, 1, 4, 2)).isNull();
+        assertThat(index.getValue(1, 3, 2, 1, 1)).isNull();
+        assertThat(index.getValue(1, 3, 0, 2, 1).toString()).isEmpty();
+        assertThat(index.getValue(1, 2, 0, 1, 1).toString()).isEmpty();
+        assertThat(index.getValue(1, 9, 0, 1, 1)).isNull();
+        assertThat(index.getValue(3, 2, 0, 2, 1).toString()).isEqualTo("Mary");
+    }
+
+    @Test
+    void escapes_are_detected_and_invalid_input_is_rejected() {
+        Er7MessageIndex index = Er7MessageIndex.of("MSH|^~\\&|||||||ADT^A01|1|P|2.6\rNTE|1||a\\T\\b\r");
+
+        assertThat(index.isEscaped(index.getValue(1, 3, 0, 1, 1))).isTrue();
+        assertThat(index.isEscaped(index.getValue(0, 9, 0, 1, 1))).isFalse();
+        assertThat(Er7MessageIndex.of("PID|1||123")).isNull();
+        assertThat(Er7MessageIndex.of(null)).isNull();
+    }
+
+}
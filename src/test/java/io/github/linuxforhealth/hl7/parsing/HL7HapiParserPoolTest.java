@@ -0,0 +1,57 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import ca.uhn.hl7v2.model.Message;
+
+class HL7HapiParserPoolTest {
+
+    private static final String MESSAGE = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|||2.6|\r"
+            + "PID|1|465 306 5961|000010016^^^MR~000010017^^^MR||Wood^Patrick^^^MR||19700101|female\r";
+
+    @Test
+    void parsers_are_reused_and_bounded() throws Exception {
+        HL7HapiParserPool pool = new HL7HapiParserPool(2);
+        assertThat(pool.getCreatedCount()).isEqualTo(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Message>> futures = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                futures.add(executor.submit(() -> pool.parse(MESSAGE)));
+            }
+            for (Future<Message> future : futures) {
+                assertThat(HL7DataExtractor.getMessageType(future.get())).isEqualTo("ADT_A01");
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(pool.getCreatedCount()).isLessThanOrEqualTo(2);
+        assertThat(pool.getBorrowCount()).isEqualTo(40);
+        assertThat(pool.getTotalWaitTimeNanos()).isGreaterThanOrEqualTo(pool.getMaxWaitTimeNanos());
+    }
+
+    @Test
+    void borrowed_parser_is_returned_to_pool() {
+        HL7HapiParserPool pool = new HL7HapiParserPool(1);
+        HL7HapiParser parser = pool.borrow();
+        pool.release(parser);
+        assertThat(pool.borrow()).isSameAs(parser);
+        assertThat(pool.getWaitCount()).isZero();
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.v26.message.ADT_A01;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.github.linuxforhealth.core.config.MessageStructureLogging;
+
+class MessageStructureLoggerTest {
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger(MessageStructureLogger.class);
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private Level originalLevel;
+
+    @BeforeEach
+    void attachAppender() {
+        originalLevel = logger.getLevel();
+        logger.setLevel(Level.INFO);
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void detachAppender() {
+        logger.detachAppender(appender);
+        appender.stop();
+        logger.setLevel(originalLevel);
+    }
+
+    @Test
+    void off_logs_nothing() {
+        CountingMessage message = new CountingMessage();
+        MessageStructureLogger structureLogger = new MessageStructureLogger(MessageStructureLogging.OFF, 1);
+        structureLogger.log(message, false);
+        structureLogger.log(message, true);
+        assertThat(appender.list).isEmpty();
+        assertThat(message.renders).isZero();
+    }
+
+    @Test
+    void always_logs_every_message() {
+        CountingMessage message = new CountingMessage();
+        MessageStructureLogger structureLogger = new MessageStructureLogger(MessageStructureLogging.ALWAYS, 100);
+        structureLogger.log(message, false);
+        structureLogger.log(message, true);
+        assertThat(appender.list).hasSize(2);
+        assertThat(appender.list.get(0).getFormattedMessage()).startsWith("HL7_MESSAGE_STRUCTURE=");
+        assertThat(message.renders).isEqualTo(2);
+    }
+
+    @Test
+    void on_failure_logs_only_failed_messages() {
+        CountingMessage message = new CountingMessage();
+        MessageStructureLogger structureLogger = new MessageStructureLogger(MessageStructureLogging.ON_FAILURE, 1);
+        structureLogger.log(message, false);
+        assertThat(appender.list).isEmpty();
+        structureLogger.log(message, true);
+        assertThat(appender.list).hasSize(1);
+        assertThat(message.renders).isEqualTo(1);
+    }
+
+    @Test
+    void sampled_logs_one_in_every_sample_rate_messages() {
+        CountingMessage message = new CountingMessage();
+        MessageStructureLogger structureLogger = new MessageStructureLogger(MessageStructureLogging.SAMPLED, 3);
+        for (int i = 0; i < 6; i++) {
+            structureLogger.log(message, false);
+        }
+        assertThat(appender.list).hasSize(2);
+        assertThat(message.renders).isEqualTo(2);
+    }
+
+    @Test
+    void sample_rate_of_one_logs_every_message() {
+        CountingMessage message = new CountingMessage();
+        MessageStructureLogger structureLogger = new MessageStructureLogger(MessageStructureLogging.SAMPLED, 1);
+        for (int i = 0; i < 3; i++) {
+            structureLogger.log(message, false);
+        }
+        assertThat(appender.list).hasSize(3);
+    }
+
+    @Test
+    void sample_rate_must_be_greater_than_zero() {
+        assertThatThrownBy(() -> new MessageStructureLogger(MessageStructureLogging.SAMPLED, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MessageStructureLogger(MessageStructureLogging.SAMPLED, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MessageStructureLogger(null, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void structure_is_not_rendered_when_info_is_disabled() {
+        logger.setLevel(Level.WARN);
+        CountingMessage message = new CountingMessage();
+        MessageStructureLogger structureLogger = new MessageStructureLogger(MessageStructureLogging.ALWAYS, 1);
+        structureLogger.log(message, true);
+        assertThat(appender.list).isEmpty();
+        assertThat(message.renders).isZero();
+    }
+
+    @Test
+    void structure_is_not_rendered_for_messages_not_selected() {
+        CountingMessage message = new CountingMessage();
+        MessageStructureLogger structureLogger = new MessageStructureLogger(MessageStructureLogging.SAMPLED, 10);
+        structureLogger.log(message, false);
+        assertThat(message.renders).isEqualTo(1);
+        for (int i = 0; i < 9; i++) {
+            structureLogger.log(message, false);
+        }
+        assertThat(appender.list).hasSize(1);
+        assertThat(message.renders).isEqualTo(1);
+    }
+
+    @Test
+    void field_values_are_truncated() throws HL7Exception {
+        CountingMessage message = new CountingMessage();
+        message.getMSH().getSendingApplication().getNamespaceID().setValue("SendingApplicationName");
+        new MessageStructureLogger(MessageStructureLogging.ALWAYS, 1).log(message, false);
+        assertThat(appender.list).hasSize(1);
+        assertThat(appender.list.get(0).getFormattedMessage()).doesNotContain("SendingApplicationName");
+    }
+
+    // Counts how many times the structure is rendered
+    private static class CountingMessage extends ADT_A01 {
+        private int renders;
+
+        @Override
+        public String printStructure() throws HL7Exception {
+            renders++;
+            return super.printStructure();
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import ca.uhn.hl7v2.model.Message;
+
+class MshHeaderTest {
+
+    private static final String MESSAGE = "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ADT^A40^ADT_A39~ORU^R01|102|T|2.6^^|||AL|NE\r"
+            + "EVN||201209122222\r"
+            + "PID|0010||PID1234^5^M11^A^MR^HOSP||DOE^JOHN^A^||19800202|F\r";
+
+    @Test
+    void header_fields_are_read_from_raw_text() {
+        MshHeader header = MshHeader.parse(MESSAGE);
+
+        assertThat(header).isNotNull();
+        assertThat(header.getFieldSeparator()).isEqualTo('|');
+        assertThat(header.getComponentSeparator()).isEqualTo('^');
+        assertThat(header.getMessageCode()).isEqualTo("ADT");
+        assertThat(header.getTriggerEvent()).isEqualTo("A40");
+        assertThat(header.getMessageStructure()).isEqualTo("ADT_A39");
+        assertThat(header.getMessageType()).isEqualTo("ADT_A40");
+        assertThat(header.getMessageControlId()).isEqualTo("102");
+        assertThat(header.getVersionId()).isEqualTo("2.6");
+        assertThat(header.isMessageType("ADT_A40")).isTrue();
+        assertThat(header.isMessageType("ADT_A39")).isFalse();
+        assertThat(header.isMessageType("ADT_A4")).isFalse();
+    }
+
+    @Test
+    void message_type_matches_parsed_message() throws Exception {
+        String message = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|||2.6|\r"
+                + "PID|1|465 306 5961|000010016^^^MR||Wood^Patrick^^^MR||19700101|female\r";
+        Message parsed = HL7HapiParserPool.getInstance().parse(message);
+
+        MshHeader header = MshHeader.parse(message);
+        assertThat(header.getMessageType()).isEqualTo(HL7DataExtractor.getMessageType(parsed));
+        assertThat(header.getMessageControlId()).isNull();
+    }
+
+    @Test
+    void header_can_be_reused_and_rejects_other_input() {
+        MshHeader header = new MshHeader();
+        assertThat(header.scan("  \n" + MESSAGE)).isTrue();
+        assertThat(header.getMessageType()).isEqualTo("ADT_A40");
+
+        assertThat(header.scan("PID|1||123")).isFalse();
+        assertThat(header.getMessageType()).isNull();
+        assertThat(header.scan("MSH|^~\\&|||||||ADT|1|P|2.6")).isTrue();
+        assertThat(header.getMessageCode()).isEqualTo("ADT");
+        assertThat(header.getMessageType()).isNull();
+        assertThat(MshHeader.parse("MSH|^~\\&|||||||AD\\T\\^A01|1|P|2.6").getMessageType()).isNull();
+        assertThat(MshHeader.parse(null)).isNull();
+    }
+
+}
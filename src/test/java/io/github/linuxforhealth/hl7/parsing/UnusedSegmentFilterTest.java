@@ -0,0 +1,53 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.Sets;
+
+class UnusedSegmentFilterTest {
+
+    private static final Set<String> USED = Sets.newHashSet("MSH", "PID");
+
+    @Test
+    void unused_segments_are_removed_keeping_group_leaders() {
+        String message = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|1|P|2.6|\r"
+                + "EVN|A01|20130617154644\r"
+                + "PID|1|465 306 5961|000010016^^^MR||Wood^Patrick^^^MR||19700101|female\r"
+                + "ZPI|1|custom\r"
+                + "AL1|1|DA|^PENICILLIN\r"
+                + "PR1|1||^Appendectomy\r"
+                + "GT1|1||Wood^Patrick\r";
+
+        String filtered = new UnusedSegmentFilter(USED).filter(message, MshHeader.parse(message));
+
+        assertThat(filtered.split("\r")).extracting(s -> s.substring(0, 3)).containsExactly("MSH", "EVN", "PID",
+                "AL1", "PR1");
+    }
+
+    @Test
+    void message_is_unchanged_when_nothing_can_be_removed() {
+        String message = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|1|P|2.6|\r"
+                + "EVN|A01|20130617154644\r"
+                + "PID|1|465 306 5961|000010016^^^MR||Wood^Patrick^^^MR||19700101|female\r";
+
+        assertThat(new UnusedSegmentFilter(USED).filter(message, MshHeader.parse(message))).isSameAs(message);
+    }
+
+    @Test
+    void message_is_unchanged_for_unknown_structure() {
+        String message = "MSH|^~\\&|hl7Integration|hl7Integration|||||ZZZ^Z99|1|P|2.6|\r"
+                + "ZPI|1|custom\r";
+
+        assertThat(new UnusedSegmentFilter(USED).filter(message, MshHeader.parse(message))).isSameAs(message);
+    }
+
+}
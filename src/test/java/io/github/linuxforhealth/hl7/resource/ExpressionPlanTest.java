@@ -0,0 +1,62 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.linuxforhealth.api.Expression;
+import io.github.linuxforhealth.hl7.expression.ExpressionAttributes;
+import io.github.linuxforhealth.hl7.expression.SimpleExpression;
+
+class ExpressionPlanTest {
+
+    private static Expression expression(String value, boolean evaluateLater) {
+        return new SimpleExpression(new ExpressionAttributes.Builder().withValue(value)
+                .withEvaluateLater(evaluateLater).build());
+    }
+
+    @Test
+    void expressions_keep_map_order_and_evaluate_later_is_separated() {
+        Map<String, Expression> expressions = new HashMap<>();
+        for (int i = 0; i < 20; i++) {
+            expressions.put("identifier_" + i, expression("v" + i, false));
+        }
+        expressions.put("id", expression("later", true));
+
+        List<String> mapOrder = new ArrayList<>(expressions.keySet());
+        mapOrder.remove("id");
+
+        ExpressionPlan plan = ExpressionPlan.compile(expressions);
+        List<String> planOrder = new ArrayList<>();
+        plan.getSteps().forEach(step -> planOrder.add(step.getName()));
+
+        assertThat(planOrder).isEqualTo(mapOrder);
+        assertThat(plan.getEvaluateLater()).containsOnlyKeys("id");
+    }
+
+    @Test
+    void key_names_are_resolved_from_expression_names() {
+        Map<String, Expression> expressions = new HashMap<>();
+        expressions.put("identifier_1", expression("a", false));
+        expressions.put("extension_KEY_NAME_SUFFIX", expression("b", false));
+        expressions.put("status", expression("c", false));
+
+        Map<String, ExpressionPlan.Step> steps = new HashMap<>();
+        ExpressionPlan.compile(expressions).getSteps().forEach(step -> steps.put(step.getName(), step));
+
+        assertThat(steps.get("identifier_1").getKeyName("X")).isEqualTo("identifier");
+        assertThat(steps.get("extension_KEY_NAME_SUFFIX").getKeyName("X")).isEqualTo("extensionX");
+        assertThat(steps.get("status").getKeyName(null)).isEqualTo("status");
+    }
+
+}
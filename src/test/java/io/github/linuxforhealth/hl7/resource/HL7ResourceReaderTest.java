@@ -6,18 +6,22 @@
 package io.github.linuxforhealth.hl7.resource;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.util.Properties;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import io.github.linuxforhealth.api.ResourceModel;
 import io.github.linuxforhealth.core.config.ConverterConfiguration;
 import io.github.linuxforhealth.hl7.message.HL7MessageModel;
 
@@ -119,4 +123,45 @@ class HL7ResourceReaderTest {
     }
   }
 
+  // Templates such as datatype/Identifier are referenced from many resource templates and parsed only once
+  @Test
+  void resource_models_are_parsed_once_and_shared() {
+    ResourceReader reader = ResourceReader.getInstance();
+    Map<String, HL7MessageModel> messagetemplates = reader.getMessageTemplates();
+    assertThat(messagetemplates).containsKey("ORU_R01");
+
+    long loads = reader.getResourceModelCacheStats().loadCount();
+    ResourceModel identifier = reader.generateResourceModel("datatype/Identifier");
+    assertThat(reader.generateResourceModel("datatype/Identifier")).isSameAs(identifier);
+    assertThat(reader.getResourceModelCacheStats().loadCount()).isEqualTo(loads);
+    assertThat(reader.getResourceModelCacheStats().hitCount()).isPositive();
+  }
+
+  // Expressions are compiled when the template is loaded, so an invalid one fails the template
+  @Test
+  void templates_with_invalid_jexl_expressions_fail_to_load() throws IOException {
+    File resources = new File(folder, "invalid_resources");
+    FileUtils.write(new File(resources, "hl7/resource/InvalidExpression.yml"),
+        "id:\n  type: STRING\n  valueOf: GeneralUtils.generateName(name\n  expressionType: JEXL\n",
+        StandardCharsets.UTF_8);
+    FileUtils.write(new File(resources, "hl7/resource/InvalidVariable.yml"),
+        "id:\n  type: STRING\n  valueOf: $name\n  vars:\n    name: PID.5, GeneralUtils.generateName(name\n",
+        StandardCharsets.UTF_8);
+    File configFile = new File(folder, "config.properties");
+    Properties prop = new Properties();
+    prop.put("additional.resources.location", resources.getPath());
+    prop.store(new FileOutputStream(configFile), null);
+    System.setProperty(CONF_PROP_HOME, configFile.getParent());
+    ConverterConfiguration.reset();
+    ResourceReader.reset();
+
+    ResourceReader reader = ResourceReader.getInstance();
+    assertThatThrownBy(() -> reader.generateResourceModel("resource/InvalidExpression"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasStackTraceContaining("Expression cannot be compiled");
+    assertThatThrownBy(() -> reader.generateResourceModel("resource/InvalidVariable"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasStackTraceContaining("Expression cannot be compiled");
+  }
+
 }
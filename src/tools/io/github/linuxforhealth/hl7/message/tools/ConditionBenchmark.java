@@ -0,0 +1,120 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.message.tools;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.github.linuxforhealth.api.Condition;
+import io.github.linuxforhealth.api.EvaluationResult;
+import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
+import io.github.linuxforhealth.core.expression.condition.ConditionUtil;
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.resource.ResourceReader;
+
+/**
+ * Measures the conditions of the templates that rely most on conditions, Observation.yml and
+ * Immunization.yml: the time to test every condition of each template against a context like the one of
+ * an OBX or RXA segment, and the time to convert an ORU_R01 and a VXU_V04 message that use them.
+ *
+ * Uses the following Java system properties:
+ * - hl7.benchmark.iterations : number of timed rounds. Defaults to 200000 condition rounds and
+ * iterations / 100 conversions.
+ * - hl7.benchmark.warmup : number of untimed rounds. Defaults to 20000.
+ *
+ * This class uses a main() method; run as a Java application.
+ */
+public class ConditionBenchmark {
+
+    private static final String[] TEMPLATES = { "resource/Observation.yml", "resource/Immunization.yml" };
+    private static final Pattern CONDITION = Pattern.compile("^\\s*-?\\s*condition:\\s*(.+?)\\s*(#.*)?$",
+            Pattern.MULTILINE);
+    private static final Pattern VARIABLE = Pattern.compile("\\$(\\w+)");
+
+    private static final String ORU = "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ORU^R01|MSG00001|T|2.6|||AL|NE\r"
+            + "PID|||555444222111^^^MPI&GenHosp&L^MR||james^anderson||19600614|M||C\r"
+            + "PV1||I|6N^1234^A^GENHOS||||0100^ANDERSON^CARL\r"
+            + "OBR|1||CD_000000|2244^General Order|||20170825010500||||||||||||||||||F\r"
+            + "OBX|1|NM|2345-7^Glucose^LN||105|mg/dL|70-99|H|||F|||20170825010500\r"
+            + "OBX|2|ST|14151-5^HCO3 BldCo-sCnc^LN||normal|mmol/L|||||F\r"
+            + "OBX|3|SN|1554-5^GLUCOSE^LN||^182|mg/dl|70-105|H|||F\r"
+            + "OBX|4|CWE|8675-3^Temperature^LN||LA6576-8^Positive^LN||||||F\r";
+    private static final String VXU = "MSH|^~\\&|MYEHR2.5|RI88140101|KIDSNET_IFL|RIHEALTH|20130531||VXU^V04^VXU_V04|20130531RI881401010105|P|2.6|||AL|NE|764|ASCII||||||^4086::132:2A57:3C28^IPv6\r"
+            + "PID|1||432155^^^^MR||Patient^Johnny^New^^^^L|Smith^Sally|20130414|M||2106-3^White^HL70005|123 Any St^^Somewhere^WI^54000^^M\r"
+            + "ORC|RE||197023^CMC|||||||^Clerk^Myron||||||||||||||||\r"
+            + "RXA|0|1|20130531|20130531|48^HPV, quadrivalent^CVX|0.5|ML^^ISO+||00^New Immunization^NIP001|^Sticker^Nurse|^^^RI2050||||33k2a|20121214|MSD^Merck^MVX|||CP|A\r"
+            + "RXR|C28161^IM^NCIT^IM^IM^HL70162|RT^right thigh^HL70163\r"
+            + "OBX|1|CE|30963-3^Vaccine purchased with^LN|1|VXC2^STATE FUNDS^HL70005||||||F|||20120901041038\r"
+            + "OBX|2|CE|64994-7^Vaccine funding program eligibility category^LN|1|V01^Not VFC^HL70064||||||F|||20140701041038\r";
+
+    public static void main(String[] args) {
+        int iterations = Integer.parseInt(System.getProperty("hl7.benchmark.iterations", "200000"));
+        int warmup = Integer.parseInt(System.getProperty("hl7.benchmark.warmup", "20000"));
+
+        for (String template : TEMPLATES) {
+            List<Condition> conditions = new ArrayList<>();
+            Map<String, EvaluationResult> context = new HashMap<>();
+            String yaml = ResourceReader.getInstance().getResourceInHl7Folder(template);
+            Matcher matcher = CONDITION.matcher(yaml);
+            int values = 0;
+            while (matcher.find()) {
+                conditions.add(ConditionUtil.createCondition(matcher.group(1)));
+                Matcher variable = VARIABLE.matcher(matcher.group(1));
+                // Alternate values that satisfy and fail the conditions
+                while (variable.find()) {
+                    String value = values % 3 == 0 ? null : (values % 3 == 1 ? "SN" : "30945-0");
+                    context.put(variable.group(1), EvaluationResultFactory.getEvaluationResult(value));
+                    values++;
+                }
+            }
+            for (int i = 0; i < warmup; i++) {
+                testAll(conditions, context);
+            }
+            long start = System.nanoTime();
+            int satisfied = 0;
+            for (int i = 0; i < iterations; i++) {
+                satisfied += testAll(conditions, context);
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%-26s: %d conditions, %.1f ns/condition (%d satisfied)%n", template,
+                    conditions.size(), (double) elapsed / iterations / conditions.size(), satisfied);
+        }
+
+        HL7ToFHIRConverter converter = new HL7ToFHIRConverter();
+        ConverterOptions options = new ConverterOptions.Builder().withProperty("TENANT", "tenantid").build();
+        int conversions = Math.max(1, iterations / 100);
+        String[][] messages = { { "ORU_R01", ORU }, { "VXU_V04", VXU } };
+        for (String[] labelAndMessage : messages) {
+            String message = labelAndMessage[1];
+            for (int i = 0; i < warmup / 100; i++) {
+                converter.convert(message, options);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < conversions; i++) {
+                converter.convert(message, options);
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%-26s: %.3f ms/message%n", labelAndMessage[0],
+                    elapsed / 1_000_000.0 / conversions);
+        }
+    }
+
+    private static int testAll(List<Condition> conditions, Map<String, EvaluationResult> context) {
+        int satisfied = 0;
+        for (Condition condition : conditions) {
+            if (condition.test(context)) {
+                satisfied++;
+            }
+        }
+        return satisfied;
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.message.tools;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
+import io.github.linuxforhealth.api.EvaluationResult;
+import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
+import io.github.linuxforhealth.core.expression.ScopedContextMap;
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+
+/**
+ * Measures the time and heap allocation of converting an ORU_R01 message with many OBX segments, and the
+ * allocation of passing context values down an expression the way evaluation did before
+ * {@link ScopedContextMap} (copying the map for every binding added) compared with scoped contexts.
+ *
+ * Uses the following Java system properties:
+ * - hl7.benchmark.obx : number of OBX segments in the message. Defaults to 300.
+ * - hl7.benchmark.iterations : number of timed conversions. Defaults to 200.
+ * - hl7.benchmark.warmup : number of untimed conversions. Defaults to 20.
+ *
+ * Allocation is read from the HotSpot thread MXBean, so it is only reported on JVMs that support it.
+ *
+ * This class uses a main() method; run as a Java application.
+ */
+public class ContextAllocationBenchmark {
+
+    // Bindings added while evaluating one expression: base value, constants, spec base value, data type,
+    // variables, simple expression base value
+    private static final int BINDINGS_PER_EXPRESSION = 6;
+
+    public static void main(String[] args) {
+        int obxCount = Integer.parseInt(System.getProperty("hl7.benchmark.obx", "300"));
+        int iterations = Integer.parseInt(System.getProperty("hl7.benchmark.iterations", "200"));
+        int warmup = Integer.parseInt(System.getProperty("hl7.benchmark.warmup", "20"));
+        String message = oruMessage(obxCount);
+
+        HL7ToFHIRConverter converter = new HL7ToFHIRConverter();
+        ConverterOptions options = new ConverterOptions.Builder().withProperty("TENANT", "tenantid").build();
+        for (int i = 0; i < warmup; i++) {
+            converter.convert(message, options);
+        }
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            converter.convert(message, options);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        System.out.println("OBX segments: " + obxCount + ", iterations: " + iterations);
+        System.out.printf("Conversion              : %.1f ms/message%n", elapsed / 1_000_000.0 / iterations);
+        if (allocatedBefore >= 0) {
+            System.out.printf("Conversion allocation   : %.1f KB/message%n", allocated / 1024.0 / iterations);
+        }
+
+        // The context of a resource template holds the resources generated so far plus its own values
+        Map<String, EvaluationResult> context = new HashMap<>();
+        for (int i = 0; i < 40; i++) {
+            context.put("value" + i, EvaluationResultFactory.getEvaluationResult("value" + i));
+        }
+        int expressions = obxCount * 30;
+        for (int i = 0; i < warmup; i++) {
+            copyContexts(context, expressions);
+            scopeContexts(context, expressions);
+        }
+        reportContexts("Copied contexts         ", context, expressions, false);
+        reportContexts("Scoped contexts         ", context, expressions, true);
+    }
+
+    private static void reportContexts(String label, Map<String, EvaluationResult> context, int expressions,
+            boolean scoped) {
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        int found = scoped ? scopeContexts(context, expressions) : copyContexts(context, expressions);
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        System.out.printf("%s: %.1f ms, %s for %d expressions (%d lookups)%n", label, elapsed / 1_000_000.0,
+                allocatedBefore >= 0 ? String.format("%.1f KB", allocated / 1024.0) : "n/a", expressions, found);
+    }
+
+    private static int copyContexts(Map<String, EvaluationResult> context, int expressions) {
+        int found = 0;
+        EvaluationResult value = EvaluationResultFactory.getEvaluationResult("value");
+        for (int e = 0; e < expressions; e++) {
+            Map<String, EvaluationResult> local = context;
+            for (int b = 0; b < BINDINGS_PER_EXPRESSION; b++) {
+                Map<String, EvaluationResult> copy = new HashMap<>(local);
+                copy.put("binding" + b, value);
+                local = ImmutableMap.copyOf(copy);
+            }
+            found += lookups(local);
+        }
+        return found;
+    }
+
+    private static int scopeContexts(Map<String, EvaluationResult> context, int expressions) {
+        int found = 0;
+        EvaluationResult value = EvaluationResultFactory.getEvaluationResult("value");
+        ScopedContextMap root = ScopedContextMap.of(context);
+        for (int e = 0; e < expressions; e++) {
+            ScopedContextMap local = root;
+            for (int b = 0; b < BINDINGS_PER_EXPRESSION; b++) {
+                local = local.with("binding" + b, value);
+            }
+            found += lookups(local);
+        }
+        return found;
+    }
+
+    private static int lookups(Map<String, EvaluationResult> local) {
+        int found = 0;
+        for (int i = 0; i < 10; i++) {
+            if (local.get("value" + i) != null) {
+                found++;
+            }
+        }
+        return local.get("binding0") != null ? found + 1 : found;
+    }
+
+    private static String oruMessage(int obxCount) {
+        StringBuilder sb = new StringBuilder(
+                "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ORU^R01|MSG00001|T|2.6|||AL|NE\r")
+                        .append("PID|||555444222111^^^MPI&GenHosp&L^MR||james^anderson||19600614|M||C\r")
+                        .append("PV1||I|6N^1234^A^GENHOS||||0100^ANDERSON^CARL\r")
+                        .append("OBR|1||CD_000000|2244^General Order|||20170825010500||||||||||||||||||F\r");
+        for (int i = 1; i <= obxCount; i++) {
+            sb.append("OBX|").append(i).append("|NM|1234-").append(i % 10).append("^Test ").append(i)
+                    .append("^LN||").append(i).append("|mg/dL|0-100|N|||F|||20170825010500\r");
+        }
+        return sb.toString();
+    }
+
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+                    .getThreadMXBean();
+            return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+}
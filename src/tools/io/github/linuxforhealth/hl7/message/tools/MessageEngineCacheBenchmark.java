@@ -0,0 +1,84 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.message.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.hl7.fhir.r4.model.Bundle;
+
+import io.github.linuxforhealth.fhir.FHIRContext;
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.message.HL7MessageEngine;
+
+/**
+ * Measures the per-message cost of building a new message engine (FHIRContext and JSON parser) for
+ * every conversion, compared with the cached engine used by HL7ToFHIRConverter.convert.
+ *
+ * Uses the following Java system properties:
+ * - hl7.input.file : HL7 file to convert; a built-in ADT_A01 message is used when not set
+ * - hl7.benchmark.iterations : number of timed conversions per mode. Defaults to 2000.
+ * - hl7.benchmark.warmup : number of untimed conversions per mode. Defaults to 200.
+ *
+ * This class uses a main() method; run as a Java application.
+ */
+public class MessageEngineCacheBenchmark {
+
+    private static final String DEFAULT_MESSAGE = "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ADT^A01|102|T|2.6|||AL|NE|764|ASCII||||||^4086::132:2A57:3C28^IPv6\r"
+            + "EVN||201209122222\r"
+            + "PID|0010||PID1234^5^M11^A^MR^HOSP~1234568965^^^USA^SS||DOE^JOHN^A^||19800202|F||W|111 TEST_STREET_NAME^^TEST_CITY^NY^111-1111^USA||(905)111-1111|||S|ZZ|12^^^124|34-13-312||||TEST_BIRTH_PLACE\r"
+            + "PV1|1|ff|yyy|EL|ABC||200^ATTEND_DOC_FAMILY_TEST^ATTEND_DOC_GIVEN_TEST|201^REFER_DOC_FAMILY_TEST^REFER_DOC_GIVEN_TEST|202^CONSULTING_DOC_FAMILY_TEST^CONSULTING_DOC_GIVEN_TEST|MED|||||B6|E|272^ADMITTING_DOC_FAMILY_TEST^ADMITTING_DOC_GIVEN_TEST||48390|||||||||||||||||||||||||201409122200|20150206031726\r"
+            + "AL1|1|DRUG|00000741^OXYCODONE||HYPOTENSION\r";
+
+    public static void main(String[] args) throws IOException {
+        String message = DEFAULT_MESSAGE;
+        String inputFileName = System.getProperty("hl7.input.file");
+        if (inputFileName != null) {
+            File inputFile = new File(inputFileName);
+            if (!inputFile.exists()) {
+                System.out.println("Input file " + inputFile + " not found");
+                return;
+            }
+            message = FileUtils.readFileToString(inputFile, StandardCharsets.UTF_8);
+        }
+        int iterations = Integer.parseInt(System.getProperty("hl7.benchmark.iterations", "2000"));
+        int warmup = Integer.parseInt(System.getProperty("hl7.benchmark.warmup", "200"));
+
+        HL7ToFHIRConverter converter = new HL7ToFHIRConverter();
+        ConverterOptions options = new ConverterOptions.Builder().withProperty("TENANT", "tenantid").build();
+
+        run(converter, options, message, warmup, false);
+        run(converter, options, message, warmup, true);
+        long uncached = run(converter, options, message, iterations, false);
+        long cached = run(converter, options, message, iterations, true);
+
+        System.out.println("Iterations: " + iterations);
+        System.out.printf("New engine per message : %.1f us/message%n", uncached / 1000.0 / iterations);
+        System.out.printf("Cached engine          : %.1f us/message%n", cached / 1000.0 / iterations);
+    }
+
+    private static long run(HL7ToFHIRConverter converter, ConverterOptions options, String message,
+            int iterations, boolean cached) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            if (cached) {
+                converter.convert(message, options);
+            } else {
+                // Per-message engine construction, as done before engines were cached
+                FHIRContext context = new FHIRContext(options.isPrettyPrint(), options.isValidateResource(),
+                        options.getProperties(), options.getZoneIdText());
+                HL7MessageEngine engine = new HL7MessageEngine(context, options.getBundleType());
+                Bundle bundle = converter.convertToBundle(message, options, engine);
+                engine.getFHIRContext().encodeResourceToString(bundle);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+}
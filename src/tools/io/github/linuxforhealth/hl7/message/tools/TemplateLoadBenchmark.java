@@ -0,0 +1,72 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.message.tools;
+
+import java.util.Map;
+
+import com.google.common.cache.CacheStats;
+
+import io.github.linuxforhealth.hl7.message.HL7MessageModel;
+import io.github.linuxforhealth.hl7.resource.ResourceReader;
+
+/**
+ * Measures the startup cost of loading the configured message templates with a new ResourceReader: the
+ * load time, the heap retained by the loaded templates, and how many resource models were shared instead
+ * of parsed again. Without the shared models every request parses its template, and the subtree of
+ * templates it references, again, so the requests are a lower bound of the parses without sharing and
+ * the retained heap grows at least in the same ratio.
+ *
+ * Uses the following Java system properties:
+ * - hl7.benchmark.iterations : number of timed loads. Defaults to 20.
+ * - hl7.benchmark.warmup : number of untimed loads. Defaults to 5.
+ *
+ * This class uses a main() method; run as a Java application.
+ */
+public class TemplateLoadBenchmark {
+
+    public static void main(String[] args) {
+        int iterations = Integer.parseInt(System.getProperty("hl7.benchmark.iterations", "20"));
+        int warmup = Integer.parseInt(System.getProperty("hl7.benchmark.warmup", "5"));
+
+        for (int i = 0; i < warmup; i++) {
+            ResourceReader.reset();
+            ResourceReader.getInstance().getMessageTemplates();
+        }
+
+        long elapsed = 0;
+        long retained = 0;
+        CacheStats stats = null;
+        int templates = 0;
+        for (int i = 0; i < iterations; i++) {
+            ResourceReader.reset();
+            long before = usedHeap();
+            long start = System.nanoTime();
+            Map<String, HL7MessageModel> messageTemplates = ResourceReader.getInstance().getMessageTemplates();
+            elapsed += System.nanoTime() - start;
+            retained += usedHeap() - before;
+            stats = ResourceReader.getInstance().getResourceModelCacheStats();
+            templates = messageTemplates.size();
+        }
+
+        System.out.println("Message templates      : " + templates);
+        System.out.printf("Load time              : %.1f ms%n", elapsed / 1_000_000.0 / iterations);
+        System.out.printf("Retained heap          : %.1f MB%n", retained / 1024.0 / 1024.0 / iterations);
+        System.out.println("Resource model requests: " + stats.requestCount());
+        System.out.println("Resource models parsed : " + stats.loadCount());
+        System.out.println("Resource models shared : " + stats.hitCount());
+        System.out.printf("Without sharing        : at least %.1fx the parses, load time and retained heap%n",
+                (double) stats.requestCount() / stats.loadCount());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * (C) Copyright IBM Corp. 2022
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.message.tools;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Structure;
+import io.github.linuxforhealth.api.EvaluationResult;
+import io.github.linuxforhealth.api.Expression;
+import io.github.linuxforhealth.api.Variable;
+import io.github.linuxforhealth.core.expression.SimpleEvaluationResult;
+import io.github.linuxforhealth.core.expression.VariableUtils;
+import io.github.linuxforhealth.hl7.expression.ExpressionAttributes;
+import io.github.linuxforhealth.hl7.expression.ResourceExpression;
+import io.github.linuxforhealth.hl7.expression.specification.SpecificationParser;
+import io.github.linuxforhealth.hl7.message.HL7MessageData;
+import io.github.linuxforhealth.hl7.parsing.HL7DataExtractor;
+import io.github.linuxforhealth.hl7.parsing.HL7HapiParserPool;
+import io.github.linuxforhealth.hl7.resource.HL7DataBasedResourceModel;
+import io.github.linuxforhealth.hl7.resource.ResourceReader;
+
+/**
+ * Measures ResourceExpression.evaluate for the Identifier and CodeableConcept datatype templates, for a
+ * PID-3 and an OBX-3 value, with the variable specs parsed when the variables are created (current) and
+ * with the parsing that the variables did on every evaluation before (previous). The previous mode
+ * evaluates the template and parses, in the same iteration, the spec strings of all variables of the
+ * template and of the datatype templates it uses. The previous code stopped parsing at the first spec of
+ * a variable that had a value, so the previous time is an upper bound.
+ *
+ * Uses the following Java system properties:
+ * - hl7.benchmark.iterations : number of timed evaluations per mode and round. Defaults to 100000.
+ * - hl7.benchmark.warmup : number of untimed evaluations per mode. Defaults to 10000.
+ * - hl7.benchmark.rounds : number of rounds, alternating the modes. Defaults to 3.
+ *
+ * This class uses a main() method; run as a Java application.
+ */
+public class VariableSpecBenchmark {
+
+    private static final String MESSAGE = "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ADT^A01|102|T|2.6|||AL|NE\r"
+            + "EVN||201209122222\r"
+            + "PID|||555444222111^^^MPI&GenHosp&L^MR~1234568965^^^USA^SS||james^anderson||19600614|M||C\r"
+            + "PV1||I|6N^1234^A^GENHOS||||0100^ANDERSON^CARL\r"
+            + "OBX|1|NM|2345-7^Glucose^LN^GLU^Glucose Level^L||105|mg/dL|70-99|H|||F|||20170825010500\r";
+
+    // Keeps the parse results in use so the parsing is not optimized away
+    private static int parsedSpecs;
+
+    public static void main(String[] args) throws HL7Exception {
+        int iterations = Integer.parseInt(System.getProperty("hl7.benchmark.iterations", "100000"));
+        int warmup = Integer.parseInt(System.getProperty("hl7.benchmark.warmup", "10000"));
+        int rounds = Integer.parseInt(System.getProperty("hl7.benchmark.rounds", "3"));
+
+        Message message = HL7HapiParserPool.getInstance().parse(MESSAGE);
+        HL7DataExtractor hl7DTE = new HL7DataExtractor(message);
+        HL7MessageData data = new HL7MessageData(hl7DTE);
+
+        benchmark("datatype/Identifier", "PID.3", hl7DTE.getStructure("PID", 0).getValue(), data, iterations,
+                warmup, rounds);
+        benchmark("datatype/CodeableConcept", "OBX.3",
+                hl7DTE.getStructure("OBX", 0).getValue(), data, iterations, warmup, rounds);
+    }
+
+    private static void benchmark(String template, String specs, Structure segment, HL7MessageData data,
+            int iterations, int warmup, int rounds) {
+        ExpressionAttributes attr = new ExpressionAttributes.Builder().withSpecs(specs).withValueOf(template)
+                .build();
+        ResourceExpression exp = new ResourceExpression(attr);
+        Map<String, EvaluationResult> context = new HashMap<>();
+        EvaluationResult base = new SimpleEvaluationResult<>(segment);
+
+        // The spec strings of all variables of the template and the templates it uses, which the
+        // variables parsed on every evaluation before
+        List<String> specStrings = new ArrayList<>();
+        collectSpecs(template, new HashSet<>(), specStrings);
+
+        run(exp, data, context, base, specStrings, warmup, false);
+        run(exp, data, context, base, specStrings, warmup, true);
+        long current = 0;
+        long previous = 0;
+        for (int round = 0; round < rounds; round++) {
+            current += run(exp, data, context, base, specStrings, iterations, false);
+            previous += run(exp, data, context, base, specStrings, iterations, true);
+        }
+        double currentUs = current / 1000.0 / iterations / rounds;
+        double previousUs = previous / 1000.0 / iterations / rounds;
+        System.out.printf("%-26s: %d variable specs, current %.2f us/evaluation, previous at most %.2f"
+                + " us/evaluation (saving %.0f%%)%n", template, specStrings.size(), currentUs, previousUs,
+                100 * (previousUs - currentUs) / previousUs);
+    }
+
+    private static long run(ResourceExpression exp, HL7MessageData data, Map<String, EvaluationResult> context,
+            EvaluationResult base, List<String> specStrings, int iterations, boolean parseSpecs) {
+        int parsed = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            if (parseSpecs) {
+                parsed += parseAll(specStrings);
+            }
+            exp.evaluate(data, context, base);
+        }
+        long elapsed = System.nanoTime() - start;
+        parsedSpecs += parsed;
+        return elapsed;
+    }
+
+    private static void collectSpecs(String template, Set<String> visited, List<String> specStrings) {
+        if (!visited.add(template)) {
+            return;
+        }
+        HL7DataBasedResourceModel model = (HL7DataBasedResourceModel) ResourceReader.getInstance()
+                .generateResourceModel(template);
+        for (Expression expression : model.getExpressions().values()) {
+            for (Variable variable : expression.getVariables()) {
+                for (String spec : variable.getSpec()) {
+                    if (!VariableUtils.isVar(spec)) {
+                        specStrings.add(spec);
+                    }
+                }
+            }
+            if (expression instanceof ResourceExpression) {
+                collectSpecs(((ResourceExpression) expression).getResource(), visited, specStrings);
+            }
+        }
+    }
+
+    private static int parseAll(List<String> specStrings) {
+        int parsed = 0;
+        for (String spec : specStrings) {
+            if (SpecificationParser.parse(spec, false, false, false) != null) {
+                parsed++;
+            }
+        }
+        return parsed;
+    }
+
+}